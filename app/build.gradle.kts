@@ -1,5 +1,6 @@
 plugins {
     alias(libs.plugins.android.application)
+    alias(libs.plugins.androidx.baselineprofile)
 }
 
 android {
@@ -19,12 +20,20 @@ android {
 
     buildTypes {
         release {
-            isMinifyEnabled = false
+            // R8 runs in full mode by default on this AGP version
+            isMinifyEnabled = true
+            isShrinkResources = true
             proguardFiles(
                 getDefaultProguardFile("proguard-android-optimize.txt"),
                 "proguard-rules.pro"
             )
         }
+        // The baseline profile plugin derives benchmarkRelease and nonMinifiedRelease from
+        // release; sign them with the debug key so :macrobenchmark can install them
+        matching { it.name == "benchmarkRelease" || it.name == "nonMinifiedRelease" }
+            .configureEach {
+                signingConfig = signingConfigs.getByName("debug")
+            }
     }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
@@ -38,6 +47,8 @@ dependencies {
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
+    implementation(libs.profileinstaller)
+    baselineProfile(project(":macrobenchmark"))
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
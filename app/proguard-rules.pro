@@ -12,10 +12,13 @@
 #   public *;
 #}
 
-# Uncomment this to preserve the line number information for
-# debugging stack traces.
-#-keepattributes SourceFile,LineNumberTable
+# Preserve the line number information for debugging stack traces.
+-keepattributes SourceFile,LineNumberTable
 
-# If you keep the line number information, uncomment this to
-# hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+# Hide the original source file name.
+-renamesourcefileattribute SourceFile
+
+# Nothing in the app is reached by reflection: the service, activities and
+# FileProvider are kept through the manifest, views through their layouts, and
+# MediaCodec/MediaProjection callbacks as overrides of framework classes. Add
+# -keep rules here if that changes.
\ No newline at end of file
@@ -1,25 +1,34 @@
 package com.example.globally_draggable_widget;
 
-import android.annotation.SuppressLint;
 import android.app.ActivityManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
+import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.ServiceInfo;
+import android.content.res.Configuration;
 import android.graphics.PixelFormat;
-import android.media.projection.MediaProjection;
 import android.media.projection.MediaProjectionManager;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.Choreographer;
+import android.view.Display;
 import android.view.Gravity;
 import android.view.LayoutInflater;
-import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewStub;
 import android.view.WindowManager;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
@@ -27,14 +36,63 @@ import android.widget.Toast;
 
 import androidx.core.app.NotificationCompat;
 
+import com.example.globally_draggable_widget.capture.CapturePipeline;
+import com.example.globally_draggable_widget.capture.CaptureRequestQueue;
+import com.example.globally_draggable_widget.capture.CaptureCache;
+import com.example.globally_draggable_widget.capture.CaptureOptions;
+import com.example.globally_draggable_widget.capture.CapturePersister;
+import com.example.globally_draggable_widget.capture.CaptureResult;
+import com.example.globally_draggable_widget.metrics.LatencyHistogram;
+import com.example.globally_draggable_widget.metrics.MetricsRegistry;
+import com.example.globally_draggable_widget.overlay.MenuAnimator;
+import com.example.globally_draggable_widget.overlay.OverlayAttacher;
+import com.example.globally_draggable_widget.overlay.OverlayPositionUpdater;
+import com.example.globally_draggable_widget.overlay.OverlayTouchController;
+import com.example.globally_draggable_widget.record.RecordingConfig;
+import com.example.globally_draggable_widget.record.ReplayRecorder;
+import com.example.globally_draggable_widget.record.ScreenRecorder;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 public class GlobalCaptureOverlayService extends Service {
     private static final String TAG = "GlobalOverlayService";
     private static final String CHANNEL_ID = "OverlayServiceChannel";
     private static final int NOTIFICATION_ID = 1001;
+    private static final int BURST_COUNT = 5;
+    private static final long BURST_INTERVAL_MS = 250;
+    private static final long FRAME_TIMEOUT_MS = 2000;
+    private static final float MAX_PREDICTION_DP = 24;
+    private static final int NO_RESTORE_X = Integer.MIN_VALUE;
+    private static final long CACHE_JANITOR_PERIOD_HOURS = 6;
+    // Async trace section from onCreate to the first overlay frame, read by the startup benchmark
+    private static final String STARTUP_TRACE = "OverlayStartup";
+    // A tapped screenshot only exists to be shared, so it stays out of the gallery
+    private static final CaptureOptions SHARE_OPTIONS =
+            new CaptureOptions(null, CapturePersister.Destination.CACHE);
+
+    public static final String ACTION_START_CAPTURE_SESSION = "START_CAPTURE_SESSION";
+    // Debug builds only: posts the metrics dump into the notification
+    public static final String ACTION_SHOW_METRICS = "SHOW_METRICS";
+    public static final String EXTRA_RESULT_CODE = "result_code";
+    public static final String EXTRA_RESULT_DATA = "result_data";
+    public static final String EXTRA_BURST_COUNT = "burst_count";
+    public static final String EXTRA_START_RECORDING = "start_recording";
+    public static final String EXTRA_START_REPLAY = "start_replay";
 
     private WindowManager windowManager;
     private View overlayView;
     private ImageView mainButton;
+    private View menuSlot;
+    private ViewStub menuStub;
     private LinearLayout menuContainer;
     private ImageView screenshotButton;
     private ImageView recordButton;
@@ -43,18 +101,58 @@ public class GlobalCaptureOverlayService extends Service {
     private boolean isMenuVisible = false;
     private static final int REQUEST_SCREENSHOT = 1001;
     private MediaProjectionManager mediaProjectionManager;
-    private MediaProjection mediaProjection;
     private Handler screenshotHandler;
     private Intent resultData;
+    private GlobalScreenCaptureManager captureManager;
+    private ScreenRecorder screenRecorder;
+    private ReplayRecorder replayRecorder;
+    private OverlayPositionUpdater positionUpdater;
+    private OverlayTouchController touchController;
+    private MenuAnimator menuAnimator;
+    private int menuRestoreX = NO_RESTORE_X;
+    private ScheduledExecutorService cacheJanitor;
+    private OverlayAttacher overlayAttacher;
+    private long createdNanos;
 
     @Override
     public void onCreate() {
         super.onCreate();
+        createdNanos = System.nanoTime();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(STARTUP_TRACE, 0);
+        }
         Log.d(TAG, "onCreate called");
         mainHandler = new Handler(Looper.getMainLooper());
         screenshotHandler = new Handler(Looper.getMainLooper());
         mediaProjectionManager = (MediaProjectionManager) getSystemService(Context.MEDIA_PROJECTION_SERVICE);
+        captureManager = new GlobalScreenCaptureManager(this);
+        captureManager.setFrameTimeoutMs(FRAME_TIMEOUT_MS);
+        // Rapid taps keep the capture in flight plus the newest one
+        captureManager.setQueuePolicy(1, CaptureRequestQueue.OverflowPolicy.DROP_OLDEST);
+        captureManager.setSessionListener(() -> {
+            if (screenRecorder != null) {
+                screenRecorder.stop();
+            }
+            stopReplay();
+        });
         initializeService();
+        startCacheJanitor();
+    }
+
+    private void startCacheJanitor() {
+        CaptureCache cache = CaptureCache.getInstance(this);
+        cacheJanitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CaptureCacheJanitor");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        cacheJanitor.scheduleWithFixedDelay(() -> {
+            try {
+                cache.trim();
+            } catch (Exception e) {
+                Log.e(TAG, "Error trimming capture cache", e);
+            }
+        }, 0, CACHE_JANITOR_PERIOD_HOURS, TimeUnit.HOURS);
     }
 
     private void initializeService() {
@@ -62,7 +160,7 @@ public class GlobalCaptureOverlayService extends Service {
             Log.d(TAG, "initializeService called");
             createNotificationChannel();
             startForeground(NOTIFICATION_ID, createNotification());
-            initializeOverlayWithRetry();
+            attachOverlay();
         } catch (Exception e) {
             Log.e(TAG, "Error initializing service", e);
             stopSelf();
@@ -99,23 +197,66 @@ public class GlobalCaptureOverlayService extends Service {
     }
 
     private Notification createNotification() {
-        return new NotificationCompat.Builder(this, CHANNEL_ID)
+        return createNotificationBuilder().build();
+    }
+
+    private NotificationCompat.Builder createNotificationBuilder() {
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setContentTitle("Capture Service Active")
                 .setContentText("Tap to manage capture options")
                 .setSmallIcon(R.drawable.assistive_touch)
-                .setPriority(NotificationCompat.PRIORITY_LOW)
-                .build();
+                .setPriority(NotificationCompat.PRIORITY_LOW);
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            Intent intent = new Intent(this, GlobalCaptureOverlayService.class)
+                    .setAction(ACTION_SHOW_METRICS);
+            PendingIntent pendingIntent = PendingIntent.getService(this, 0, intent,
+                    PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+            builder.addAction(0, "Metrics", pendingIntent);
+        }
+        return builder;
     }
 
-    private void initializeOverlayWithRetry() {
-        mainHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                if (!initializeOverlay()) {
-                    mainHandler.postDelayed(this, 1000);
-                }
-            }
-        });
+    /**
+     * Logs the metrics dump and shows it in the foreground notification, for looking at a
+     * slow device without adb.
+     */
+    private void showMetrics() {
+        StringWriter out = new StringWriter();
+        writeMetrics(new PrintWriter(out));
+        String text = out.toString();
+        Log.d(TAG, "Metrics:\n" + text);
+        NotificationManager notificationManager =
+                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (notificationManager != null) {
+            notificationManager.notify(NOTIFICATION_ID, createNotificationBuilder()
+                    .setContentText("Capture metrics")
+                    .setStyle(new NotificationCompat.BigTextStyle().bigText(text))
+                    .build());
+        }
+    }
+
+    private void writeMetrics(PrintWriter writer) {
+        MetricsRegistry.getInstance().dump(writer);
+        captureManager.dump(writer);
+        writer.flush();
+    }
+
+    /**
+     * {@code adb shell dumpsys activity service <package>/.GlobalCaptureOverlayService};
+     * pass {@code --reset} to clear the metrics after printing them.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writeMetrics(writer);
+        if (args != null && Arrays.asList(args).contains("--reset")) {
+            MetricsRegistry.getInstance().reset();
+            writer.println("Metrics reset");
+        }
+    }
+
+    private void attachOverlay() {
+        overlayAttacher = new OverlayAttacher(this, mainHandler, this::initializeOverlay);
+        overlayAttacher.start();
     }
 
     /*private boolean initializeOverlay() {
@@ -187,6 +328,31 @@ public class GlobalCaptureOverlayService extends Service {
         }
     }*/
 
+    /**
+     * Ends the startup trace once the button's first frame is handed to the GPU, then
+     * inflates the menu while the main thread is idle so the first tap doesn't pay for it.
+     */
+    private void awaitFirstOverlayFrame() {
+        Runnable firstFrame = () -> {
+            long elapsedMs = (System.nanoTime() - createdNanos) / 1_000_000L;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.endAsyncSection(STARTUP_TRACE, 0);
+            }
+            Log.d(TAG, "Service start to first overlay frame: " + elapsedMs + "ms");
+            Looper.myQueue().addIdleHandler(() -> {
+                ensureMenuInflated();
+                return false;
+            });
+        };
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            overlayView.getViewTreeObserver().registerFrameCommitCallback(firstFrame);
+        } else {
+            // The traversal that draws the new window runs right after frame callbacks
+            Choreographer.getInstance().postFrameCallback(
+                    frameTimeNanos -> mainHandler.post(firstFrame));
+        }
+    }
+
     private View createOverlayView() {
         try {
             LayoutInflater inflater = LayoutInflater.from(this);
@@ -216,26 +382,15 @@ public class GlobalCaptureOverlayService extends Service {
                 return null;
             }
 
-            menuContainer = view.findViewById(R.id.menu_container);
-            if (menuContainer == null) {
-                Log.e(TAG, "Failed to find menu_container");
-                return null;
-            }
-
-            screenshotButton = view.findViewById(R.id.menu_screenshot);
-            if (screenshotButton == null) {
-                Log.e(TAG, "Failed to find menu_screenshot");
-                return null;
-            }
-
-            recordButton = view.findViewById(R.id.menu_record);
-            if (recordButton == null) {
-                Log.e(TAG, "Failed to find menu_record");
+            menuSlot = view.findViewById(R.id.menu_slot);
+            menuStub = view.findViewById(R.id.menu_stub);
+            if (menuSlot == null || menuStub == null) {
+                Log.e(TAG, "Failed to find menu_stub");
                 return null;
             }
 
+            mainButton.setOnClickListener(v -> toggleMenu());
             setupTouchListener(view);
-            setupMenuListeners();
 
             return view;
         } catch (Exception e) {
@@ -266,8 +421,10 @@ public class GlobalCaptureOverlayService extends Service {
             if (!isOverlayAdded && windowManager != null) {
                 WindowManager.LayoutParams params = createLayoutParams();
                 windowManager.addView(overlayView, params);
+                positionUpdater = new OverlayPositionUpdater(windowManager, overlayView, params);
                 isOverlayAdded = true;
                 Log.d(TAG, "Overlay added successfully");
+                awaitFirstOverlayFrame();
                 return true;  // Successfully initialized
             }
 
@@ -296,25 +453,88 @@ public class GlobalCaptureOverlayService extends Service {
         });
     }*/
 
+    /**
+     * Inflates the menu the first time it is needed. The button is on screen before this
+     * runs; it normally happens from an idle handler right after the first frame, or at
+     * the latest on the first tap.
+     */
+    private boolean ensureMenuInflated() {
+        if (menuContainer != null) {
+            return true;
+        }
+        if (menuStub == null) {
+            return false;
+        }
+        try {
+            long start = SystemClock.uptimeMillis();
+            menuContainer = (LinearLayout) menuStub.inflate();
+            menuStub = null;
+            screenshotButton = menuContainer.findViewById(R.id.menu_screenshot);
+            recordButton = menuContainer.findViewById(R.id.menu_record);
+            menuAnimator = new MenuAnimator(menuContainer);
+            LatencyHistogram toggleLatency =
+                    MetricsRegistry.getInstance().histogram("overlay.menu_toggle");
+            menuAnimator.setLatencyListener(nanos -> toggleLatency.record(nanos / 1000));
+            setupMenuListeners();
+            if ((screenRecorder != null && screenRecorder.isRecording())
+                    || replayRecorder != null) {
+                setRecordIcon(R.drawable.recording);
+            }
+            Log.d(TAG, "Menu inflated in " + (SystemClock.uptimeMillis() - start) + "ms");
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error inflating menu", e);
+            return false;
+        }
+    }
+
+    private void setRecordIcon(int resId) {
+        if (recordButton != null) {
+            recordButton.setImageResource(resId);
+        }
+    }
+
     private void setupMenuListeners() {
-        mainButton.setOnClickListener(v -> toggleMenu());
+        // Capture once the menu is off the screen, so it never shows in the screenshot
+        screenshotButton.setOnClickListener(v ->
+                toggleMenu(() -> takeScreenshot(1, System.nanoTime())));
 
-        screenshotButton.setOnClickListener(v -> {
-            toggleMenu();
-            takeScreenshot();
+        screenshotButton.setOnLongClickListener(v -> {
+            toggleMenu(() -> takeScreenshot(BURST_COUNT, System.nanoTime()));
+            return true;
         });
 
         recordButton.setOnClickListener(v -> {
             toggleMenu();
-            // Implement recording functionality
+            if (replayRecorder != null && replayRecorder.isActive()) {
+                saveReplay();
+            } else {
+                toggleRecording();
+            }
+        });
+
+        recordButton.setOnLongClickListener(v -> {
+            toggleMenu();
+            toggleReplay();
+            return true;
         });
     }
 
-    private void takeScreenshot() {
+    /**
+     * @param notBeforeNanos only frames composited at or after this {@link System#nanoTime()}
+     *                       are captured, so a frame held from before the tap is never reused
+     */
+    private void takeScreenshot(int burstCount, long notBeforeNanos) {
         try {
-            // Create an intent to start the screenshot activity
+            if (captureManager.isSessionActive()) {
+                captureWithSession(burstCount, notBeforeNanos);
+                return;
+            }
+
+            // No warm session yet: ask for consent, the grant comes back via onStartCommand
             Intent intent = new Intent(this, ScreenshotActivity.class);
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            intent.putExtra(EXTRA_BURST_COUNT, burstCount);
             startActivity(intent);
         } catch (Exception e) {
             Log.e(TAG, "Error taking screenshot", e);
@@ -322,10 +542,297 @@ public class GlobalCaptureOverlayService extends Service {
         }
     }
 
+    private void captureWithSession(int burstCount, long notBeforeNanos) {
+        if (burstCount > 1) {
+            // Later frames are newer than the first, so the whole burst shares its bound
+            captureManager.burst(burstCount, BURST_INTERVAL_MS,
+                    CaptureOptions.burst().withMinFrameTime(notBeforeNanos),
+                    new CapturePipeline.Callback() {
+                        private int completed;
+                        private int saved;
+
+                        @Override
+                        public void onCaptureComplete(CaptureResult result) {
+                            if (!result.isDuplicate()) {
+                                saved++;
+                            }
+                            if (++completed == burstCount) {
+                                Toast.makeText(GlobalCaptureOverlayService.this,
+                                        "Burst saved: " + saved + " screenshots", Toast.LENGTH_SHORT).show();
+                            }
+                        }
+
+                        @Override
+                        public void onCaptureFailed(Exception e) {
+                            Log.e(TAG, "Burst frame failed", e);
+                        }
+                    });
+            return;
+        }
+
+        captureManager.submit(SHARE_OPTIONS.withMinFrameTime(notBeforeNanos)).whenComplete((result, error) -> {
+            if (error == null) {
+                shareScreenshot(result.getUri(), result.getMimeType());
+            } else if (error instanceof RejectedExecutionException
+                    || error instanceof CancellationException) {
+                // Superseded by a newer tap
+                Log.d(TAG, "Screenshot skipped: " + error.getMessage());
+            } else {
+                Log.e(TAG, "Screenshot failed", error);
+                Toast.makeText(GlobalCaptureOverlayService.this, "Failed to save screenshot",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void toggleRecording() {
+        if (screenRecorder != null && screenRecorder.isRecording()) {
+            screenRecorder.stop();
+            return;
+        }
+        try {
+            if (captureManager.isSessionActive()) {
+                startRecording();
+                return;
+            }
+
+            Intent intent = new Intent(this, ScreenshotActivity.class);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            intent.putExtra(EXTRA_START_RECORDING, true);
+            startActivity(intent);
+        } catch (Exception e) {
+            Log.e(TAG, "Error starting recording", e);
+            Toast.makeText(this, "Failed to start recording", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void startRecording() {
+        RecordingConfig config = RecordingConfig.defaults();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R && usesMicrophone(config)) {
+            // Microphone access from a foreground service needs its own service type
+            startForeground(NOTIFICATION_ID, createNotification(),
+                    ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PROJECTION
+                            | ServiceInfo.FOREGROUND_SERVICE_TYPE_MICROPHONE);
+        }
+        screenRecorder = new ScreenRecorder(this, captureManager.getSession(), config,
+                new ScreenRecorder.Listener() {
+                    @Override
+                    public void onRecordingSaved(Uri uri) {
+                        setRecordIcon(R.drawable.ic_record);
+                        screenRecorder = null;
+                        Toast.makeText(GlobalCaptureOverlayService.this, "Recording saved",
+                                Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onRecordingFailed(Exception e) {
+                        Log.e(TAG, "Recording failed", e);
+                        setRecordIcon(R.drawable.ic_record);
+                        screenRecorder = null;
+                        Toast.makeText(GlobalCaptureOverlayService.this, "Recording failed",
+                                Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onAudioFailed(Exception e) {
+                        Log.e(TAG, "Recording audio failed", e);
+                        Toast.makeText(GlobalCaptureOverlayService.this,
+                                "Audio capture failed, recording video only",
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
+        try {
+            screenRecorder.start();
+            setRecordIcon(R.drawable.recording);
+        } catch (IOException e) {
+            Log.e(TAG, "Error starting recorder", e);
+            screenRecorder = null;
+            Toast.makeText(this, "Failed to start recording", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void toggleReplay() {
+        if (replayRecorder != null) {
+            stopReplay();
+            Toast.makeText(this, "Replay off", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (screenRecorder != null && screenRecorder.isRecording()) {
+            Toast.makeText(this, "Stop recording to use replay", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        try {
+            if (captureManager.isSessionActive()) {
+                startReplay();
+                return;
+            }
+
+            Intent intent = new Intent(this, ScreenshotActivity.class);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            intent.putExtra(EXTRA_START_REPLAY, true);
+            startActivity(intent);
+        } catch (Exception e) {
+            Log.e(TAG, "Error starting replay", e);
+            Toast.makeText(this, "Failed to start replay", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void startReplay() {
+        replayRecorder = new ReplayRecorder(this, captureManager.getSession(),
+                ReplayRecorder.defaultConfig(), ReplayRecorder.DEFAULT_WINDOW_SEC,
+                (recorder, e) -> {
+                    if (recorder != replayRecorder) {
+                        // Already replaced; just make sure it is released
+                        recorder.stop();
+                        return;
+                    }
+                    stopReplay();
+                    Toast.makeText(this, "Replay stopped: encoder error",
+                            Toast.LENGTH_SHORT).show();
+                });
+        try {
+            replayRecorder.start();
+            setRecordIcon(R.drawable.recording);
+            Toast.makeText(this, "Replay on: tap record to save the last "
+                    + ReplayRecorder.DEFAULT_WINDOW_SEC + "s", Toast.LENGTH_SHORT).show();
+        } catch (IOException e) {
+            Log.e(TAG, "Error starting replay", e);
+            replayRecorder = null;
+            Toast.makeText(this, "Failed to start replay", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void saveReplay() {
+        replayRecorder.save(new ReplayRecorder.Listener() {
+            @Override
+            public void onReplaySaved(Uri uri) {
+                Toast.makeText(GlobalCaptureOverlayService.this, "Replay saved",
+                        Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onReplayFailed(Exception e) {
+                Log.e(TAG, "Replay failed", e);
+                Toast.makeText(GlobalCaptureOverlayService.this, "Failed to save replay",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void stopReplay() {
+        if (replayRecorder != null) {
+            replayRecorder.stop();
+            replayRecorder = null;
+            setRecordIcon(R.drawable.ic_record);
+        }
+    }
+
+    private static boolean usesMicrophone(RecordingConfig config) {
+        RecordingConfig.AudioSource source = config.getAudioSource();
+        return source == RecordingConfig.AudioSource.MIC
+                || (source == RecordingConfig.AudioSource.INTERNAL
+                && Build.VERSION.SDK_INT < Build.VERSION_CODES.Q);
+    }
+
+    private boolean startCaptureSession(int resultCode, Intent data) {
+        if (screenRecorder != null) {
+            screenRecorder.stop();
+        }
+        stopReplay();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // The projection may only be obtained while running as a mediaProjection service
+            startForeground(NOTIFICATION_ID, createNotification(),
+                    ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PROJECTION);
+        }
+        return captureManager.startSession(resultCode, data);
+    }
+
+    private void shareScreenshot(Uri contentUri, String mimeType) {
+        try {
+            Intent shareIntent = new Intent(Intent.ACTION_SEND);
+            shareIntent.setType(mimeType);
+            shareIntent.putExtra(Intent.EXTRA_STREAM, contentUri);
+            shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+            Intent chooser = Intent.createChooser(shareIntent, "Share Screenshot");
+            chooser.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            startActivity(chooser);
+        } catch (Exception e) {
+            Log.e(TAG, "Error sharing screenshot", e);
+        }
+    }
+
     private void toggleMenu() {
+        toggleMenu(null);
+    }
+
+    /**
+     * @param afterCollapse when this toggle closes the menu, run once the menu is off the
+     *                      screen and the window has shrunk back to the button
+     */
+    private void toggleMenu(Runnable afterCollapse) {
+        if (!ensureMenuInflated()) {
+            return;
+        }
         isMenuVisible = !isMenuVisible;
-        Log.d(TAG, "Toggling menu visibility to: " + isMenuVisible);
-        menuContainer.setVisibility(isMenuVisible ? View.VISIBLE : View.GONE);
+        if (isMenuVisible) {
+            showMenuSlot();
+            menuAnimator.setExpanded(true);
+        } else {
+            menuAnimator.setExpanded(false, () -> {
+                hideMenuSlot();
+                if (afterCollapse != null) {
+                    afterCollapse.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Gives the menu its space before it animates in. The window grows to the left, so it
+     * moves by the slot's width in the same relayout and the button stays put; at the left
+     * edge the window stops at zero and remembers where the button was.
+     */
+    private void showMenuSlot() {
+        if (menuSlot.getVisibility() == View.VISIBLE) {
+            return;
+        }
+        menuSlot.setVisibility(View.VISIBLE);
+        if (positionUpdater == null) {
+            return;
+        }
+        int x = positionUpdater.getX();
+        int expandedX = x - menuSlotSpan();
+        if (expandedX < 0) {
+            menuRestoreX = x;
+            expandedX = 0;
+        }
+        positionUpdater.moveTo(expandedX, positionUpdater.getY());
+        positionUpdater.flush();
+    }
+
+    /**
+     * Takes the collapsed menu out of the layout so the window shrinks back to the button
+     * and stops covering the apps underneath.
+     */
+    private void hideMenuSlot() {
+        if (menuSlot.getVisibility() == View.GONE) {
+            return;
+        }
+        menuSlot.setVisibility(View.GONE);
+        if (positionUpdater == null) {
+            return;
+        }
+        int collapsedX = menuRestoreX != NO_RESTORE_X
+                ? menuRestoreX : positionUpdater.getX() + menuSlotSpan();
+        menuRestoreX = NO_RESTORE_X;
+        positionUpdater.moveTo(collapsedX, positionUpdater.getY());
+        positionUpdater.flush();
+    }
+
+    private int menuSlotSpan() {
+        ViewGroup.MarginLayoutParams lp = (ViewGroup.MarginLayoutParams) menuSlot.getLayoutParams();
+        return lp.width + lp.getMarginStart() + lp.getMarginEnd();
     }
 
     private WindowManager.LayoutParams createLayoutParams() {
@@ -350,64 +857,116 @@ public class GlobalCaptureOverlayService extends Service {
         return params;
     }
 
-    @SuppressLint("ClickableViewAccessibility")
     private void setupTouchListener(View view) {
-        final float[] touchX = new float[1];
-        final float[] touchY = new float[1];
-        final int[] offsetX = new int[1];
-        final int[] offsetY = new int[1];
-        final boolean[] isDragging = new boolean[1];
-
-        mainButton.setOnTouchListener((v, event) -> {
-            if (isMenuVisible) {
-                return false;
-            }
+        touchController = new OverlayTouchController(touchHost,
+                MAX_PREDICTION_DP * getResources().getDisplayMetrics().density);
+        mainButton.setOnTouchListener(touchController);
+        // Bounds only change with the overlay or display size, never per touch event
+        view.addOnLayoutChangeListener((v, left, top, right, bottom,
+                                        oldLeft, oldTop, oldRight, oldBottom) -> updateDragBounds());
+    }
 
-            WindowManager.LayoutParams params =
-                    (WindowManager.LayoutParams) overlayView.getLayoutParams();
-
-            switch (event.getAction()) {
-                case MotionEvent.ACTION_DOWN:
-                    touchX[0] = event.getRawX();
-                    touchY[0] = event.getRawY();
-                    offsetX[0] = params.x;
-                    offsetY[0] = params.y;
-                    isDragging[0] = false;
-                    return true;
-
-                case MotionEvent.ACTION_MOVE:
-                    float deltaX = event.getRawX() - touchX[0];
-                    float deltaY = event.getRawY() - touchY[0];
-
-                    if (!isDragging[0] &&
-                            (Math.abs(deltaX) > 10 || Math.abs(deltaY) > 10)) {
-                        isDragging[0] = true;
-                    }
+    private final OverlayTouchController.Host touchHost = new OverlayTouchController.Host() {
+        @Override
+        public boolean isDragEnabled() {
+            return !isMenuVisible && positionUpdater != null;
+        }
 
-                    if (isDragging[0]) {
-                        params.x = offsetX[0] + (int) deltaX;
-                        params.y = offsetY[0] + (int) deltaY;
-                        try {
-                            windowManager.updateViewLayout(overlayView, params);
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error updating overlay position", e);
-                        }
-                    }
-                    return true;
+        @Override
+        public int getWindowX() {
+            return positionUpdater.getX();
+        }
 
-                case MotionEvent.ACTION_UP:
-                    if (!isDragging[0]) {
-                        mainButton.performClick();
-                    }
-                    return true;
+        @Override
+        public int getWindowY() {
+            return positionUpdater.getY();
+        }
+
+        @Override
+        public void moveWindow(int x, int y) {
+            // Coalesced to one updateViewLayout per vsync
+            positionUpdater.moveTo(x, y);
+        }
+
+        @Override
+        public void commitWindow(int x, int y) {
+            positionUpdater.moveTo(x, y);
+            positionUpdater.flush();
+        }
+
+        @Override
+        public void requestAnimationFrame() {
+            Choreographer.getInstance().postFrameCallback(flingFrameCallback);
+        }
+
+        @Override
+        public void cancelAnimationFrame() {
+            Choreographer.getInstance().removeFrameCallback(flingFrameCallback);
+        }
+
+        @Override
+        public void onTap() {
+            mainButton.performClick();
+        }
+
+        @Override
+        public void onDragFinished() {
+            Log.d(TAG, "Drag finished, layout IPCs saved so far: "
+                    + positionUpdater.getIpcsSaved());
+        }
+    };
+
+    private final Choreographer.FrameCallback flingFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (positionUpdater != null && touchController.animate(frameTimeNanos / 1_000_000L)) {
+                Choreographer.getInstance().postFrameCallback(this);
             }
-            return false;
-        });
+        }
+    };
+
+    private void stopFling() {
+        Choreographer.getInstance().removeFrameCallback(flingFrameCallback);
+    }
+
+    private void updateDragBounds() {
+        if (windowManager == null || overlayView == null || touchController == null) {
+            return;
+        }
+        Display display = windowManager.getDefaultDisplay();
+        DisplayMetrics metrics = new DisplayMetrics();
+        display.getMetrics(metrics);
+        // Dragging only happens collapsed, when the window is just the button; let the
+        // button itself reach the edge past its margin
+        touchController.setDragBounds(-mainButton.getLeft(),
+                metrics.widthPixels - overlayView.getWidth(),
+                metrics.heightPixels - overlayView.getHeight(),
+                Math.round(1000f / display.getRefreshRate()));
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "Service onStartCommand");
+        if (intent != null && ACTION_SHOW_METRICS.equals(intent.getAction())) {
+            showMetrics();
+        } else if (intent != null && ACTION_START_CAPTURE_SESSION.equals(intent.getAction())) {
+            try {
+                if (!startCaptureSession(intent.getIntExtra(EXTRA_RESULT_CODE, 0),
+                        intent.getParcelableExtra(EXTRA_RESULT_DATA))) {
+                    Toast.makeText(this, "Screen capture was not allowed",
+                            Toast.LENGTH_SHORT).show();
+                } else if (intent.getBooleanExtra(EXTRA_START_RECORDING, false)) {
+                    startRecording();
+                } else if (intent.getBooleanExtra(EXTRA_START_REPLAY, false)) {
+                    startReplay();
+                } else {
+                    captureWithSession(intent.getIntExtra(EXTRA_BURST_COUNT, 1), 0);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error starting capture session", e);
+                Toast.makeText(this, "Failed to take screenshot", Toast.LENGTH_SHORT).show();
+            }
+        }
         return START_STICKY;
     }
 
@@ -416,14 +975,56 @@ public class GlobalCaptureOverlayService extends Service {
         return null;
     }
 
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        if (overlayAttacher != null) {
+            overlayAttacher.onConfigurationChanged();
+        }
+        if (isOverlayAdded) {
+            // Rotation or a display size change moves the edges the button snaps to
+            overlayView.post(this::updateDragBounds);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            captureManager.trimMemory();
+        }
+    }
+
     @Override
     public void onDestroy() {
         Log.d(TAG, "Service onDestroy");
         removeOverlayView();
+        if (screenRecorder != null) {
+            screenRecorder.stop();
+            screenRecorder = null;
+        }
+        if (replayRecorder != null) {
+            replayRecorder.stop();
+            replayRecorder = null;
+        }
+        captureManager.release();
+        if (cacheJanitor != null) {
+            cacheJanitor.shutdownNow();
+            cacheJanitor = null;
+        }
         super.onDestroy();
     }
 
     private void removeOverlayView() {
+        if (overlayAttacher != null) {
+            overlayAttacher.stop();
+            overlayAttacher = null;
+        }
+        stopFling();
+        if (positionUpdater != null) {
+            positionUpdater.cancel();
+            positionUpdater = null;
+        }
         if (windowManager != null && overlayView != null && isOverlayAdded) {
             try {
                 windowManager.removeView(overlayView);
@@ -3,10 +3,8 @@ package com.example.globally_draggable_widget;
 
 import android.app.Activity;
 import android.app.Service;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.graphics.PixelFormat;
 import android.media.projection.MediaProjection;
 import android.media.projection.MediaProjectionManager;
@@ -14,8 +12,10 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
-import android.provider.MediaStore;
+import android.os.Looper;
 import android.provider.Settings;
+import android.util.DisplayMetrics;
+import android.util.Log;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
@@ -24,21 +24,43 @@ import android.view.WindowManager;
 import android.widget.ImageView;
 import android.widget.Toast;
 
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import com.example.globally_draggable_widget.capture.CaptureOptions;
+import com.example.globally_draggable_widget.capture.CapturePipeline;
+import com.example.globally_draggable_widget.capture.CaptureRequestQueue;
+import com.example.globally_draggable_widget.capture.CaptureResult;
+import com.example.globally_draggable_widget.capture.CaptureSession;
 
+import java.io.PrintWriter;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The app's capture engine. Holds one {@link MediaProjection} through a warm
+ * {@link CaptureSession} and runs every screenshot through a shared
+ * {@link CapturePipeline}; results arrive on the main thread as soon as a frame is
+ * available. Activities only use it to ask for consent, which is handed to
+ * {@link GlobalCaptureOverlayService}, the owner of the running engine.
+ */
 public class GlobalScreenCaptureManager {
+    private static final String TAG = "ScreenCaptureManager";
     public static final int REQUEST_SCREENSHOT = 100;
     public static final int REQUEST_RECORD = 101;
     public static final int OVERLAY_PERMISSION_REQUEST_CODE = 102;
+    public static final int DEFAULT_MAX_PENDING = 2;
+
+    public interface SessionListener {
+        /** The projection ended, e.g. the user revoked it from the status bar. */
+        void onSessionStopped();
+    }
 
     private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private MediaProjectionManager projectionManager;
-    private MediaProjection mediaProjection;
-    private boolean isCapturing = false;
+    private CapturePipeline pipeline;
+    private CaptureSession session;
+    private SessionListener sessionListener;
+    private long frameTimeoutMs = CaptureSession.DEFAULT_FRAME_TIMEOUT_MS;
+    private CaptureRequestQueue<CaptureOptions, CaptureResult> requests =
+            newQueue(DEFAULT_MAX_PENDING, CaptureRequestQueue.OverflowPolicy.DROP_OLDEST);
 
     public GlobalScreenCaptureManager(Context context) {
         this.context = context;
@@ -71,92 +93,195 @@ public class GlobalScreenCaptureManager {
     }
 
     public void handleScreenshotResult(Intent data) {
-        if (!isCapturing) {
-            isCapturing = true;
-            mediaProjection = projectionManager.getMediaProjection(Activity.RESULT_OK, data);
+        // The service captures as soon as the new session delivers its first frame
+        forwardConsent(data, false);
+    }
 
-            // Start the overlay service
-            Intent serviceIntent = new Intent(context, GlobalCaptureOverlayService.class);
-            serviceIntent.putExtra("capture_type", "screenshot");
-            context.startService(serviceIntent);
+    public void handleRecordingResult(Intent data) {
+        forwardConsent(data, true);
+    }
 
-            // Delay to ensure service is started
-            new Handler().postDelayed(() -> {
-                captureScreenshot();
-                isCapturing = false;
-            }, 1000);
+    private void forwardConsent(Intent data, boolean startRecording) {
+        // Hand the grant to the service, which owns the projection and the recorder
+        Intent serviceIntent = new Intent(context, GlobalCaptureOverlayService.class);
+        serviceIntent.setAction(GlobalCaptureOverlayService.ACTION_START_CAPTURE_SESSION);
+        serviceIntent.putExtra(GlobalCaptureOverlayService.EXTRA_RESULT_CODE, Activity.RESULT_OK);
+        serviceIntent.putExtra(GlobalCaptureOverlayService.EXTRA_RESULT_DATA, data);
+        serviceIntent.putExtra(GlobalCaptureOverlayService.EXTRA_START_RECORDING, startRecording);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(serviceIntent);
+        } else {
+            context.startService(serviceIntent);
         }
     }
 
-    public void handleRecordingResult(Intent data) {
-        if (!isCapturing) {
-            isCapturing = true;
-            mediaProjection = projectionManager.getMediaProjection(Activity.RESULT_OK, data);
+    public void setSessionListener(SessionListener listener) {
+        sessionListener = listener;
+    }
 
-            // Start recording service
-            Intent serviceIntent = new Intent(context, GlobalCaptureOverlayService.class);
-            serviceIntent.putExtra("capture_type", "recording");
-            context.startService(serviceIntent);
+    /**
+     * How long a capture waits for the display's first frame before it fails.
+     */
+    public void setFrameTimeoutMs(long timeoutMs) {
+        frameTimeoutMs = timeoutMs;
+        if (session != null) {
+            session.setFrameTimeoutMs(timeoutMs);
         }
     }
 
-    private void captureScreenshot() {
-        // Implementation similar to your existing screenshot code
-        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss",
-                Locale.getDefault()).format(new Date());
-        String fileName = "Screenshot_" + timeStamp + ".png";
+    /**
+     * Turns a consent grant into a warm session, replacing any previous one. On API 29+ the
+     * caller must already be a foreground service of type mediaProjection. Returns false if
+     * the grant was rejected.
+     */
+    public boolean startSession(int resultCode, Intent data) {
+        stopCapture();
+        MediaProjection projection = projectionManager.getMediaProjection(resultCode, data);
+        if (projection == null) {
+            Log.e(TAG, "Failed to obtain media projection");
+            return false;
+        }
 
-        ContentValues values = new ContentValues();
-        values.put(MediaStore.Images.Media.DISPLAY_NAME, fileName);
-        values.put(MediaStore.Images.Media.MIME_TYPE, "image/png");
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            values.put(MediaStore.Images.Media.RELATIVE_PATH, "Pictures/Screenshots");
+        if (pipeline == null) {
+            pipeline = new CapturePipeline(context);
         }
+        DisplayMetrics metrics = new DisplayMetrics();
+        WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        wm.getDefaultDisplay().getMetrics(metrics);
 
-        Uri imageUri = context.getContentResolver()
-                .insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
-
-        try {
-            if (imageUri != null) {
-                try (FileOutputStream fos = (FileOutputStream)
-                        context.getContentResolver().openOutputStream(imageUri)) {
-                    // Implement actual screenshot capture using mediaProjection
-                    // This is a placeholder for the actual implementation
-                    Bitmap screenshot = captureScreenBitmap();
-                    if (screenshot != null) {
-                        screenshot.compress(Bitmap.CompressFormat.PNG, 100, fos);
-                        Toast.makeText(context, "Screenshot saved!",
-                                Toast.LENGTH_SHORT).show();
-                        shareScreenshot(imageUri);
+        session = new CaptureSession(pipeline, projection,
+                metrics.widthPixels, metrics.heightPixels, metrics.densityDpi,
+                stopped -> mainHandler.post(() -> {
+                    if (session == stopped) {
+                        session = null;
+                        if (sessionListener != null) {
+                            sessionListener.onSessionStopped();
+                        }
                     }
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-            Toast.makeText(context, "Failed to save screenshot",
-                    Toast.LENGTH_SHORT).show();
+                }));
+        session.setFrameTimeoutMs(frameTimeoutMs);
+        session.start();
+        return true;
+    }
+
+    public boolean isSessionActive() {
+        return session != null && session.isActive();
+    }
+
+    /**
+     * The running session, for consumers that borrow its display such as recorders.
+     */
+    public CaptureSession getSession() {
+        return session;
+    }
+
+    /**
+     * Queues a capture behind the one in flight. When {@code maxPending} captures are
+     * already waiting, {@code policy} decides whether the oldest waiting one or the new
+     * one fails with a {@link java.util.concurrent.RejectedExecutionException}. Requests
+     * queued under the previous settings keep running.
+     */
+    public void setQueuePolicy(int maxPending, CaptureRequestQueue.OverflowPolicy policy) {
+        requests = newQueue(maxPending, policy);
+    }
+
+    private CaptureRequestQueue<CaptureOptions, CaptureResult> newQueue(
+            int maxPending, CaptureRequestQueue.OverflowPolicy policy) {
+        return new CaptureRequestQueue<>(maxPending, policy, (options, request) ->
+                capture(options, new CapturePipeline.Callback() {
+                    @Override
+                    public void onCaptureComplete(CaptureResult result) {
+                        request.complete(result);
+                    }
+
+                    @Override
+                    public void onCaptureFailed(Exception e) {
+                        request.fail(e);
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return request.isCancelled();
+                    }
+                }));
+    }
+
+    /**
+     * Requests a capture through the bounded queue, so overlapping requests never run
+     * pipelines in parallel. The future completes on the main thread; cancelling it stops
+     * the capture before anything is written when possible.
+     */
+    public CompletableFuture<CaptureResult> submit(CaptureOptions options) {
+        return requests.submit(options);
+    }
+
+    public void capture(CaptureOptions options, CapturePipeline.Callback callback) {
+        if (!isSessionActive()) {
+            failNoSession(callback);
+            return;
         }
+        session.capture(options, callback);
     }
 
-    private Bitmap captureScreenBitmap() {
-        // Implement actual screen capture using mediaProjection
-        // This would require setting up a VirtualDisplay and capturing its contents
-        return null; // Placeholder
+    public void burst(int count, long intervalMs, CaptureOptions options,
+                      CapturePipeline.Callback callback) {
+        if (!isSessionActive()) {
+            failNoSession(callback);
+            return;
+        }
+        session.burst(count, intervalMs, options, callback);
     }
 
-    private void shareScreenshot(Uri imageUri) {
-        Intent shareIntent = new Intent(Intent.ACTION_SEND);
-        shareIntent.setType("image/png");
-        shareIntent.putExtra(Intent.EXTRA_STREAM, imageUri);
-        shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-        context.startActivity(Intent.createChooser(shareIntent, "Share Screenshot"));
+    private void failNoSession(CapturePipeline.Callback callback) {
+        mainHandler.post(() -> callback.onCaptureFailed(
+                new IllegalStateException("No capture session")));
+    }
+
+    /**
+     * Drops cached capture memory, e.g. from {@code onTrimMemory}.
+     */
+    public void trimMemory() {
+        if (pipeline != null) {
+            pipeline.trimMemory();
+        }
+    }
+
+    /**
+     * Writes session, queue and bitmap pool state. Called from {@code dumpsys} on a binder
+     * thread, so the numbers are a best-effort snapshot.
+     */
+    public void dump(PrintWriter writer) {
+        CaptureSession current = session;
+        if (current != null && current.isActive()) {
+            writer.println("Session: " + current.getWidth() + "x" + current.getHeight()
+                    + " scale=" + current.getScale());
+        } else {
+            writer.println("Session: inactive");
+        }
+        CaptureRequestQueue<CaptureOptions, CaptureResult> queue = requests;
+        writer.println("Queue: pending=" + queue.getPendingCount()
+                + " submitted=" + queue.getSubmittedCount()
+                + " dropped=" + queue.getDroppedCount()
+                + " rejected=" + queue.getRejectedCount());
+        CapturePipeline currentPipeline = pipeline;
+        if (currentPipeline != null) {
+            writer.println("Bitmap pool: " + currentPipeline.getBitmapPool());
+        }
     }
 
     public void stopCapture() {
-        if (mediaProjection != null) {
-            mediaProjection.stop();
-            mediaProjection = null;
+        if (session != null) {
+            CaptureSession stopping = session;
+            session = null;
+            stopping.stop();
+        }
+    }
+
+    public void release() {
+        stopCapture();
+        if (pipeline != null) {
+            pipeline.quit();
+            pipeline = null;
         }
-        isCapturing = false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.example.globally_draggable_widget.capture;
+
+/**
+ * Picks an encoder per frame from its luma entropy: low-detail frames (text, flat UI) go
+ * to the lossless tier, where they stay small and sharp; busy frames go to the lossy tier,
+ * which is both faster and far smaller for photographic content.
+ */
+public class AutoEncoderPolicy {
+    public static final double DEFAULT_LOSSLESS_BELOW_BITS = 4.5;
+
+    private final double losslessBelowBits;
+    private final ImageEncoder lossless;
+    private final ImageEncoder lossy;
+
+    public AutoEncoderPolicy(double losslessBelowBits, ImageEncoder lossless, ImageEncoder lossy) {
+        this.losslessBelowBits = losslessBelowBits;
+        this.lossless = lossless;
+        this.lossy = lossy;
+    }
+
+    public static AutoEncoderPolicy defaults() {
+        return new AutoEncoderPolicy(DEFAULT_LOSSLESS_BELOW_BITS, ImageEncoders.png(),
+                ImageEncoders.jpeg(ImageEncoders.DEFAULT_QUALITY));
+    }
+
+    public ImageEncoder select(double entropyBits) {
+        return entropyBits < losslessBelowBits ? lossless : lossy;
+    }
+}
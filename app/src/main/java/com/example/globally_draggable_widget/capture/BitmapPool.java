@@ -0,0 +1,70 @@
+package com.example.globally_draggable_widget.capture;
+
+import android.graphics.Bitmap;
+
+/**
+ * ARGB_8888 bitmaps shared by the capture paths, so a burst reuses the same few
+ * screen-sized buffers instead of allocating one per shot.
+ */
+public class BitmapPool {
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private final SizeKeyedPool<Bitmap> pool;
+
+    public BitmapPool(long maxBytes) {
+        pool = new SizeKeyedPool<>(new SizeKeyedPool.Allocator<Bitmap>() {
+            @Override
+            public Bitmap allocate(int width, int height) {
+                return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            }
+
+            @Override
+            public long sizeOf(Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            public void discard(Bitmap bitmap) {
+                bitmap.recycle();
+            }
+        }, maxBytes);
+    }
+
+    /** Contents of the returned bitmap are undefined. */
+    public Bitmap acquire(int width, int height) {
+        return pool.acquire(width, height);
+    }
+
+    /** The caller must not touch the bitmap afterwards. */
+    public void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            bitmap.recycle();
+            return;
+        }
+        pool.release(bitmap, bitmap.getWidth(), bitmap.getHeight());
+    }
+
+    public void clear() {
+        pool.clear();
+    }
+
+    public long getHits() {
+        return pool.getHits();
+    }
+
+    public long getMisses() {
+        return pool.getMisses();
+    }
+
+    public long getBytesResident() {
+        return pool.getBytesResident();
+    }
+
+    @Override
+    public String toString() {
+        return pool.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.globally_draggable_widget.capture;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Bounded store for share-only captures under {@code cacheDir/screenshots}. Files are
+ * tracked in a {@link CaptureCacheIndex}, so listing and eviction never walk the
+ * directory; {@link #trim()} reconciles the index with the disk and is run by the
+ * service's janitor.
+ */
+public class CaptureCache {
+    private static final String TAG = "CaptureCache";
+    public static final String DIRECTORY = "screenshots";
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_MAX_COUNT = 50;
+
+    private static CaptureCache instance;
+
+    private final File directory;
+    private final CaptureCacheIndex index;
+    private boolean loaded;
+
+    public static synchronized CaptureCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new CaptureCache(new File(context.getApplicationContext().getCacheDir(),
+                    DIRECTORY), DEFAULT_MAX_BYTES, DEFAULT_MAX_COUNT);
+        }
+        return instance;
+    }
+
+    public CaptureCache(File directory, long maxBytes, int maxCount) {
+        this.directory = directory;
+        this.index = new CaptureCacheIndex(maxBytes, maxCount);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public synchronized void setLimits(long maxBytes, int maxCount) {
+        index.setLimits(maxBytes, maxCount);
+    }
+
+    /**
+     * Adds a file that was just written into the cache directory, evicting the least
+     * recently used captures if the limits are exceeded.
+     */
+    public synchronized void commit(File file) {
+        delete(index.put(file.getName(), file.length()));
+    }
+
+    /** Marks a capture as used, e.g. when it is shared again. */
+    public synchronized void touch(File file) {
+        index.touch(file.getName());
+    }
+
+    /** Most recently used captures first. */
+    public synchronized List<File> recent(int limit) {
+        load();
+        List<File> files = new ArrayList<>();
+        for (String name : index.recent(limit)) {
+            files.add(new File(directory, name));
+        }
+        return files;
+    }
+
+    public synchronized long getTotalBytes() {
+        return index.getTotalBytes();
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Picks up files left by earlier runs and evicts down to the limits.
+     */
+    public synchronized void trim() {
+        load();
+        delete(index.trim());
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(modified[a], modified[b]));
+
+        LinkedHashMap<String, Long> oldestFirst = new LinkedHashMap<>();
+        for (Integer i : order) {
+            if (files[i].isFile()) {
+                oldestFirst.put(files[i].getName(), files[i].length());
+            }
+        }
+        index.putAllOlder(oldestFirst);
+    }
+
+    private void delete(List<String> names) {
+        for (String name : names) {
+            File file = new File(directory, name);
+            if (!file.delete() && file.exists()) {
+                Log.e(TAG, "Failed to evict " + name);
+            }
+        }
+        if (!names.isEmpty()) {
+            Log.d(TAG, "Evicted " + names.size() + " captures, "
+                    + index.getTotalBytes() + " bytes in " + index.size() + " files");
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.globally_draggable_widget.capture;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * In-memory LRU index of cached captures, bounded by total bytes and entry count.
+ * Not thread-safe; {@link CaptureCache} serialises access.
+ */
+public class CaptureCacheIndex {
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxBytes;
+    private int maxCount;
+    private long totalBytes;
+
+    public CaptureCacheIndex(long maxBytes, int maxCount) {
+        setLimits(maxBytes, maxCount);
+    }
+
+    public void setLimits(long maxBytes, int maxCount) {
+        if (maxBytes <= 0 || maxCount <= 0) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.maxCount = maxCount;
+    }
+
+    /**
+     * Records an entry as most recently used and returns the names evicted to stay within
+     * the limits. The new entry itself is never evicted.
+     */
+    public List<String> put(String name, long bytes) {
+        Long previous = entries.put(name, bytes);
+        if (previous != null) {
+            totalBytes -= previous;
+        }
+        totalBytes += bytes;
+        return evict(name);
+    }
+
+    /**
+     * Adds entries found on disk as less recently used than everything already indexed,
+     * without evicting. {@code oldestFirst} must iterate from the oldest entry.
+     */
+    public void putAllOlder(Map<String, Long> oldestFirst) {
+        LinkedHashMap<String, Long> newer = new LinkedHashMap<>(entries);
+        entries.clear();
+        for (Map.Entry<String, Long> entry : oldestFirst.entrySet()) {
+            if (!newer.containsKey(entry.getKey())) {
+                entries.put(entry.getKey(), entry.getValue());
+                totalBytes += entry.getValue();
+            }
+        }
+        entries.putAll(newer);
+    }
+
+    public boolean touch(String name) {
+        return entries.get(name) != null;
+    }
+
+    public boolean remove(String name) {
+        Long bytes = entries.remove(name);
+        if (bytes == null) {
+            return false;
+        }
+        totalBytes -= bytes;
+        return true;
+    }
+
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /** Returns the names evicted to bring the index back within its limits. */
+    public List<String> trim() {
+        return evict(null);
+    }
+
+    /** Up to {@code limit} names, most recently used first. */
+    public List<String> recent(int limit) {
+        List<String> names = new ArrayList<>(entries.keySet());
+        List<String> result = new ArrayList<>(Math.min(limit, names.size()));
+        ListIterator<String> it = names.listIterator(names.size());
+        while (it.hasPrevious() && result.size() < limit) {
+            result.add(it.previous());
+        }
+        return result;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private List<String> evict(String keep) {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while ((totalBytes > maxBytes || entries.size() > maxCount) && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            totalBytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+            it.remove();
+        }
+        return evicted;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.globally_draggable_widget.capture;
+
+import android.graphics.Rect;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-capture settings.
+ */
+public class CaptureOptions {
+    private static final AtomicLong lastDuplicateScope = new AtomicLong();
+    private static final CaptureOptions AUTO =
+            new CaptureOptions(null, CapturePersister.Destination.MEDIA_STORE);
+    private static final CaptureOptions BURST =
+            new CaptureOptions(null, CapturePersister.Destination.MEDIA_STORE, null, true);
+
+    private final ImageEncoder encoder;
+    private final CapturePersister.Destination destination;
+    private final Rect crop;
+    // Captures only count as duplicates of earlier ones in the same scope; 0 never skips
+    private final long duplicateScope;
+    private final long minFrameTimeNanos;
+
+    /**
+     * @param encoder     encoder to use, or null to let the pipeline's
+     *                    {@link AutoEncoderPolicy} choose from the frame content
+     * @param destination where the encoded image is written
+     */
+    public CaptureOptions(ImageEncoder encoder, CapturePersister.Destination destination) {
+        this(encoder, destination, null);
+    }
+
+    /**
+     * @param crop region to keep in display pixels, or null for the whole display. It is
+     *             scaled along with the session and clipped to the frame.
+     */
+    public CaptureOptions(ImageEncoder encoder, CapturePersister.Destination destination,
+                          Rect crop) {
+        this(encoder, destination, crop, false);
+    }
+
+    /**
+     * @param skipDuplicates when the frame is identical to the previous capture made with
+     *                       these options, skip encoding and return a reference to that
+     *                       capture. Each {@link CaptureSession#burst} starts over, so a
+     *                       burst never refers back to an earlier burst's file.
+     */
+    public CaptureOptions(ImageEncoder encoder, CapturePersister.Destination destination,
+                          Rect crop, boolean skipDuplicates) {
+        this(encoder, destination, crop, skipDuplicates ? newDuplicateScope() : 0, 0);
+    }
+
+    private CaptureOptions(ImageEncoder encoder, CapturePersister.Destination destination,
+                           Rect crop, long duplicateScope, long minFrameTimeNanos) {
+        this.encoder = encoder;
+        this.destination = destination;
+        this.crop = crop != null ? new Rect(crop) : null;
+        this.duplicateScope = duplicateScope;
+        this.minFrameTimeNanos = minFrameTimeNanos;
+    }
+
+    private static long newDuplicateScope() {
+        return lastDuplicateScope.incrementAndGet();
+    }
+
+    /**
+     * Copy that only accepts frames composited at or after {@code nanos} on the
+     * {@link System#nanoTime()} clock, e.g. once the overlay's own menu has left the
+     * screen. The held frame is used when it is new enough; otherwise the capture waits
+     * for the display to repaint.
+     */
+    public CaptureOptions withMinFrameTime(long nanos) {
+        return new CaptureOptions(encoder, destination, crop, duplicateScope, nanos);
+    }
+
+    /**
+     * Copy whose captures are not matched against any made before it. Returns this when
+     * duplicates are not skipped.
+     */
+    CaptureOptions withNewDuplicateScope() {
+        if (duplicateScope == 0) {
+            return this;
+        }
+        return new CaptureOptions(encoder, destination, crop, newDuplicateScope(),
+                minFrameTimeNanos);
+    }
+
+    /** Auto-selected encoder, saved to MediaStore. */
+    public static CaptureOptions auto() {
+        return AUTO;
+    }
+
+    /** Like {@link #auto()}, but unchanged frames are stored only once. */
+    public static CaptureOptions burst() {
+        return BURST;
+    }
+
+    public ImageEncoder getEncoder() {
+        return encoder;
+    }
+
+    public CapturePersister.Destination getDestination() {
+        return destination;
+    }
+
+    public Rect getCrop() {
+        return crop;
+    }
+
+    public boolean isSkipDuplicates() {
+        return duplicateScope != 0;
+    }
+
+    long getDuplicateScope() {
+        return duplicateScope;
+    }
+
+    public long getMinFrameTimeNanos() {
+        return minFrameTimeNanos;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.globally_draggable_widget.capture;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+
+import androidx.core.content.FileProvider;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Single place where encoded captures are written. Bytes go in one channel write from the
+ * in-memory encode buffer to their final destination: a pending MediaStore entry that is
+ * published once complete, or, for share-only flows, the app cache exposed through
+ * {@link FileProvider}.
+ */
+public class CapturePersister {
+    private static final String RELATIVE_PATH = "Pictures/Screenshots";
+
+    public enum Destination {
+        /** Saved to the shared Pictures/Screenshots collection. */
+        MEDIA_STORE,
+        /** Kept in the app cache, only reachable through the share URI. */
+        CACHE
+    }
+
+    private final Context context;
+    private final CaptureCache cache;
+
+    public CapturePersister(Context context) {
+        this.context = context.getApplicationContext();
+        this.cache = CaptureCache.getInstance(context);
+    }
+
+    public Uri persist(EncodeBuffer encoded, ImageEncoder encoder, Destination destination)
+            throws IOException {
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS",
+                Locale.getDefault()).format(new Date());
+        String fileName = "Screenshot_" + timeStamp + "." + encoder.getFileExtension();
+        if (destination == Destination.CACHE) {
+            return persistToCache(encoded, fileName);
+        }
+        return persistToMediaStore(encoded, encoder.getMimeType(), fileName);
+    }
+
+    private Uri persistToMediaStore(EncodeBuffer encoded, String mimeType, String fileName)
+            throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, fileName);
+        values.put(MediaStore.Images.Media.MIME_TYPE, mimeType);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            values.put(MediaStore.Images.Media.RELATIVE_PATH, RELATIVE_PATH);
+            // Hidden from other apps until fully written
+            values.put(MediaStore.Images.Media.IS_PENDING, 1);
+        }
+
+        ContentResolver resolver = context.getContentResolver();
+        Uri uri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (uri == null) {
+            throw new IOException("Failed to create MediaStore entry");
+        }
+
+        try {
+            ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "w");
+            if (pfd == null) {
+                throw new IOException("Failed to open " + uri);
+            }
+            try (FileOutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(pfd)) {
+                writeFully(out.getChannel(), encoded.asByteBuffer());
+            }
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                ContentValues publish = new ContentValues();
+                publish.put(MediaStore.Images.Media.IS_PENDING, 0);
+                resolver.update(uri, publish, null, null);
+            }
+            return uri;
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(uri, null, null);
+            throw e;
+        }
+    }
+
+    private Uri persistToCache(EncodeBuffer encoded, String fileName) throws IOException {
+        File cachePath = cache.getDirectory();
+        if (!cachePath.isDirectory() && !cachePath.mkdirs()) {
+            throw new IOException("Failed to create " + cachePath);
+        }
+        File imageFile = new File(cachePath, fileName);
+
+        try (FileOutputStream out = new FileOutputStream(imageFile)) {
+            writeFully(out.getChannel(), encoded.asByteBuffer());
+        } catch (IOException e) {
+            imageFile.delete();
+            throw e;
+        }
+        cache.commit(imageFile);
+
+        return FileProvider.getUriForFile(
+                context,
+                context.getPackageName() + ".fileprovider",
+                imageFile
+        );
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+}
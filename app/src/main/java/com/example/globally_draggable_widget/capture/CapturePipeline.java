@@ -0,0 +1,336 @@
+package com.example.globally_draggable_widget.capture;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.media.Image;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.example.globally_draggable_widget.metrics.Counter;
+import com.example.globally_draggable_widget.metrics.LatencyHistogram;
+import com.example.globally_draggable_widget.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Runs a screenshot through acquire -> convert -> encode -> persist on a dedicated
+ * background thread. Only the final result callback is posted back to the main thread.
+ * Every capture is wrapped in a {@code Capture} trace section with one nested section
+ * per stage, and stage latencies and outcomes go to the {@link MetricsRegistry}.
+ */
+public class CapturePipeline {
+    private static final String TAG = "CapturePipeline";
+
+    public enum Stage { ACQUIRE, HASH, CONVERT, ENCODE, PERSIST }
+
+    private static final String CAPTURE_SECTION = "Capture";
+    private static final String[] STAGE_SECTIONS = new String[Stage.values().length];
+
+    static {
+        for (Stage stage : Stage.values()) {
+            STAGE_SECTIONS[stage.ordinal()] =
+                    "Capture." + stage.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public interface Callback {
+        void onCaptureComplete(CaptureResult result);
+
+        void onCaptureFailed(Exception e);
+
+        /**
+         * Polled between stages; once true the capture stops before writing anything and
+         * fails with a {@link CancellationException}.
+         */
+        default boolean isCancelled() {
+            return false;
+        }
+    }
+
+    /**
+     * Supplies frames to the acquire stage. Every frame returned by {@link #acquireFrame()}
+     * is handed back through {@link #releaseFrame(Image)} once it has been converted.
+     */
+    public interface FrameSource {
+        Image acquireFrame();
+
+        void releaseFrame(Image image);
+    }
+
+    public interface StageListener {
+        void onStageComplete(Stage stage, long durationNanos);
+    }
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Handler mainHandler;
+    // Reused across captures so the encoded bytes never need a second copy
+    private final EncodeBuffer encodeBuffer = new EncodeBuffer(1 << 20);
+    private final CapturePersister persister;
+    private final BitmapPool bitmapPool = new BitmapPool(BitmapPool.DEFAULT_MAX_BYTES);
+    private final ImageConverter converter = new ImageConverter(bitmapPool);
+    private final int[] entropyHistogram = new int[256];
+    private final FrameHasher frameHasher = new FrameHasher(FrameHasher.DEFAULT_TILE_SIZE);
+    // Tile hashes of the last duplicate-checked capture and of the current frame
+    private long[] lastFrameHashes = new long[0];
+    private long[] frameHashes = new long[0];
+    private final Rect lastHashedRegion = new Rect();
+    private long lastHashedScope;
+    private CaptureResult lastHashedResult;
+    private volatile AutoEncoderPolicy encoderPolicy = AutoEncoderPolicy.defaults();
+    private volatile StageListener stageListener;
+    private final LatencyHistogram[] stageLatency = new LatencyHistogram[Stage.values().length];
+    private final LatencyHistogram totalLatency;
+    private final Counter completed;
+    private final Counter duplicates;
+    private final Counter cancelled;
+    private final Counter failed;
+    // Trace sections opened on the pipeline thread and not yet closed
+    private int openSections;
+
+    public CapturePipeline(Context context) {
+        persister = new CapturePersister(context);
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        for (Stage stage : Stage.values()) {
+            stageLatency[stage.ordinal()] = metrics.histogram(
+                    "capture.stage." + stage.name().toLowerCase(Locale.ROOT));
+        }
+        totalLatency = metrics.histogram("capture.total");
+        completed = metrics.counter("capture.completed");
+        duplicates = metrics.counter("capture.duplicates");
+        cancelled = metrics.counter("capture.cancelled");
+        failed = metrics.counter("capture.failed");
+        thread = new HandlerThread("CapturePipeline", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Handler bound to the pipeline thread. Pass it to {@code createVirtualDisplay} and
+     * projection callbacks so frames are delivered off the main looper.
+     */
+    public Handler getHandler() {
+        return handler;
+    }
+
+    public void setStageListener(StageListener listener) {
+        stageListener = listener;
+    }
+
+    /**
+     * Policy used for captures whose {@link CaptureOptions} leave the encoder unset.
+     */
+    public void setEncoderPolicy(AutoEncoderPolicy policy) {
+        encoderPolicy = policy;
+    }
+
+    /**
+     * Captures the current frame of {@code source}. The callback is invoked on the main
+     * thread.
+     *
+     * @param region part of the frame to keep, in frame pixels
+     */
+    public void capture(FrameSource source, Rect region, CaptureOptions options,
+                        Callback callback) {
+        handler.post(() -> runStages(source, region, options, callback));
+    }
+
+    private void runStages(FrameSource source, Rect region, CaptureOptions options,
+                           Callback callback) {
+        StageTimings timings = new StageTimings();
+        beginSection(CAPTURE_SECTION);
+        try {
+            checkCancelled(callback);
+            beginStage(Stage.ACQUIRE);
+            long start = SystemClock.elapsedRealtimeNanos();
+            Image image = source.acquireFrame();
+            start = endStage(Stage.ACQUIRE, start, timings);
+            if (image == null) {
+                throw new IOException("No frame available");
+            }
+
+            if (options.isSkipDuplicates()) {
+                boolean unchanged;
+                beginStage(Stage.HASH);
+                try {
+                    unchanged = hashAndCompare(image, region, options.getDuplicateScope());
+                } catch (RuntimeException e) {
+                    source.releaseFrame(image);
+                    throw e;
+                }
+                start = endStage(Stage.HASH, start, timings);
+                if (unchanged) {
+                    source.releaseFrame(image);
+                    CaptureResult result = lastHashedResult.duplicate(timings);
+                    duplicates.increment();
+                    totalLatency.record(timings.getTotalNanos() / 1000);
+                    Log.d(TAG, "Capture complete: " + result);
+                    mainHandler.post(() -> callback.onCaptureComplete(result));
+                    return;
+                }
+            }
+
+            Bitmap bitmap;
+            ImageEncoder encoder = options.getEncoder();
+            beginStage(Stage.CONVERT);
+            try {
+                if (encoder == null) {
+                    encoder = selectEncoder(image, region);
+                }
+                bitmap = converter.convert(image, region);
+            } finally {
+                source.releaseFrame(image);
+            }
+            start = endStage(Stage.CONVERT, start, timings);
+
+            encodeBuffer.reset();
+            try {
+                checkCancelled(callback);
+                beginStage(Stage.ENCODE);
+                encoder.encode(bitmap, encodeBuffer);
+            } finally {
+                bitmapPool.release(bitmap);
+            }
+            start = endStage(Stage.ENCODE, start, timings);
+
+            // Last chance: past this point the capture is stored
+            checkCancelled(callback);
+            beginStage(Stage.PERSIST);
+            Uri uri = persister.persist(encodeBuffer, encoder, options.getDestination());
+            endStage(Stage.PERSIST, start, timings);
+
+            CaptureResult result = new CaptureResult(uri, encoder.getMimeType(),
+                    encoder.getName(), encodeBuffer.size(), timings);
+            if (options.isSkipDuplicates()) {
+                rememberHashes(region, options.getDuplicateScope(), result);
+            }
+            completed.increment();
+            totalLatency.record(timings.getTotalNanos() / 1000);
+            Log.d(TAG, "Capture complete: " + result);
+            mainHandler.post(() -> callback.onCaptureComplete(result));
+        } catch (CancellationException e) {
+            cancelled.increment();
+            Log.d(TAG, "Capture cancelled");
+            mainHandler.post(() -> callback.onCaptureFailed(e));
+        } catch (Exception e) {
+            failed.increment();
+            Log.e(TAG, "Capture failed", e);
+            mainHandler.post(() -> callback.onCaptureFailed(e));
+        } finally {
+            // A failing stage leaves its section open
+            while (openSections > 0) {
+                endSection();
+            }
+        }
+    }
+
+    private void beginStage(Stage stage) {
+        beginSection(STAGE_SECTIONS[stage.ordinal()]);
+    }
+
+    private void beginSection(String name) {
+        Trace.beginSection(name);
+        openSections++;
+    }
+
+    private void endSection() {
+        Trace.endSection();
+        openSections--;
+    }
+
+    /**
+     * Hashes the frame region into {@code frameHashes} and reports whether it matches the
+     * last duplicate-checked capture in the same scope.
+     */
+    private boolean hashAndCompare(Image image, Rect region, long scope) {
+        Image.Plane plane = image.getPlanes()[0];
+        int tiles = frameHasher.tileCount(region.width(), region.height());
+        if (frameHashes.length < tiles) {
+            frameHashes = new long[tiles];
+        }
+        ByteBuffer pixels = ImageConverter.regionStart(plane.getBuffer(), region,
+                plane.getPixelStride(), plane.getRowStride());
+        frameHasher.hash(pixels, region.width(), region.height(), plane.getPixelStride(),
+                plane.getRowStride(), frameHashes);
+        return lastHashedResult != null && lastHashedScope == scope
+                && lastHashedRegion.equals(region)
+                && FrameHasher.countChanged(lastFrameHashes, frameHashes, tiles) == 0;
+    }
+
+    private void rememberHashes(Rect region, long scope, CaptureResult result) {
+        long[] swap = lastFrameHashes;
+        lastFrameHashes = frameHashes;
+        frameHashes = swap;
+        lastHashedRegion.set(region);
+        lastHashedScope = scope;
+        lastHashedResult = result;
+    }
+
+    private static void checkCancelled(Callback callback) {
+        if (callback.isCancelled()) {
+            throw new CancellationException("Capture cancelled");
+        }
+    }
+
+    /**
+     * Pool the pipeline converts frames into. Other bitmap consumers, such as thumbnails,
+     * should borrow from it too so the memory cap covers them.
+     */
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * Drops pooled bitmaps, e.g. from {@code onTrimMemory}.
+     */
+    public void trimMemory() {
+        handler.post(() -> {
+            Log.d(TAG, "Trimming bitmap pool: " + bitmapPool);
+            bitmapPool.clear();
+        });
+    }
+
+    /**
+     * Reports {@code e} to {@code callback} on the main thread without running any stage.
+     */
+    public void deliverFailure(Callback callback, Exception e) {
+        mainHandler.post(() -> callback.onCaptureFailed(e));
+    }
+
+    private ImageEncoder selectEncoder(Image image, Rect region) {
+        Image.Plane plane = image.getPlanes()[0];
+        ByteBuffer pixels = ImageConverter.regionStart(plane.getBuffer(), region,
+                plane.getPixelStride(), plane.getRowStride());
+        double entropy = ImageEntropy.estimate(pixels, region.width(), region.height(),
+                plane.getPixelStride(), plane.getRowStride(), entropyHistogram);
+        return encoderPolicy.select(entropy);
+    }
+
+    private long endStage(Stage stage, long start, StageTimings timings) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        long duration = now - start;
+        endSection();
+        timings.record(stage, duration);
+        stageLatency[stage.ordinal()].record(duration / 1000);
+        StageListener listener = stageListener;
+        if (listener != null) {
+            listener.onStageComplete(stage, duration);
+        }
+        return now;
+    }
+
+    public void quit() {
+        thread.quitSafely();
+    }
+}
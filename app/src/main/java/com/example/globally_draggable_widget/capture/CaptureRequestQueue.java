@@ -0,0 +1,166 @@
+package com.example.globally_draggable_widget.capture;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Serialises capture requests: one runs at a time and at most {@code maxPending} wait
+ * behind it. When the queue is full a new request either replaces the oldest waiting one
+ * or is rejected, so rapid taps never pile up work. Each request is a
+ * {@link CompletableFuture}; cancelling it removes it from the queue, or asks the running
+ * worker to stop at its next checkpoint. Thread-safe.
+ */
+public class CaptureRequestQueue<T, R> {
+
+    public enum OverflowPolicy {
+        /** Fail the oldest waiting request to make room for the new one. */
+        DROP_OLDEST,
+        /** Fail the new request. */
+        REJECT
+    }
+
+    public interface Worker<T, R> {
+        /**
+         * Starts {@code payload}. The worker must eventually call {@link Request#complete}
+         * or {@link Request#fail} exactly once, from any thread.
+         */
+        void start(T payload, Request<R> request);
+    }
+
+    /** Handle a worker uses to report the outcome of the request it is running. */
+    public static final class Request<R> {
+        private final CaptureRequestQueue<?, R> queue;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        private Request(CaptureRequestQueue<?, R> queue) {
+            this.queue = queue;
+        }
+
+        public boolean isCancelled() {
+            return future.isCancelled();
+        }
+
+        public void complete(R result) {
+            future.complete(result);
+            queue.onFinished(this);
+        }
+
+        public void fail(Throwable error) {
+            future.completeExceptionally(error);
+            queue.onFinished(this);
+        }
+    }
+
+    private static final class Entry<T, R> {
+        final T payload;
+        final Request<R> request;
+
+        Entry(T payload, Request<R> request) {
+            this.payload = payload;
+            this.request = request;
+        }
+    }
+
+    private final int maxPending;
+    private final OverflowPolicy policy;
+    private final Worker<T, R> worker;
+    private final ArrayDeque<Entry<T, R>> pending = new ArrayDeque<>();
+    private Entry<T, R> running;
+    private long submitted;
+    private long dropped;
+    private long rejected;
+
+    public CaptureRequestQueue(int maxPending, OverflowPolicy policy, Worker<T, R> worker) {
+        if (maxPending < 0) {
+            throw new IllegalArgumentException("maxPending must not be negative");
+        }
+        this.maxPending = maxPending;
+        this.policy = policy;
+        this.worker = worker;
+    }
+
+    public CompletableFuture<R> submit(T payload) {
+        Entry<T, R> entry = new Entry<>(payload, new Request<>(this));
+        Entry<T, R> evicted = null;
+        boolean startNow = false;
+        boolean accepted = true;
+        synchronized (this) {
+            submitted++;
+            if (running == null) {
+                running = entry;
+                startNow = true;
+            } else if (pending.size() < maxPending) {
+                pending.add(entry);
+            } else if (policy == OverflowPolicy.DROP_OLDEST && !pending.isEmpty()) {
+                evicted = pending.poll();
+                pending.add(entry);
+                dropped++;
+            } else {
+                rejected++;
+                accepted = false;
+            }
+        }
+
+        CompletableFuture<R> future = entry.request.future;
+        if (!accepted) {
+            future.completeExceptionally(new RejectedExecutionException("Capture queue is full"));
+            return future;
+        }
+        if (evicted != null) {
+            evicted.request.future.completeExceptionally(
+                    new RejectedExecutionException("Dropped for a newer capture"));
+        }
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                onCancelled(entry);
+            }
+        });
+        if (startNow) {
+            worker.start(entry.payload, entry.request);
+        }
+        return future;
+    }
+
+    private synchronized void onCancelled(Entry<T, R> entry) {
+        // A running request keeps its slot until the worker reports back
+        pending.remove(entry);
+    }
+
+    private void onFinished(Request<R> request) {
+        Entry<T, R> next;
+        synchronized (this) {
+            if (running == null || running.request != request) {
+                return;
+            }
+            next = pending.poll();
+            while (next != null && next.request.isCancelled()) {
+                next = pending.poll();
+            }
+            running = next;
+        }
+        if (next != null) {
+            worker.start(next.payload, next.request);
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized boolean isBusy() {
+        return running != null;
+    }
+
+    public synchronized long getSubmittedCount() {
+        return submitted;
+    }
+
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.globally_draggable_widget.capture;
+
+import android.net.Uri;
+
+/**
+ * Outcome of a successful capture: where it was stored, how it was encoded and how long
+ * each stage took. A duplicate result points at the earlier capture the frame matched.
+ */
+public class CaptureResult {
+    private final Uri uri;
+    private final String mimeType;
+    private final String encoderName;
+    private final long encodedBytes;
+    private final StageTimings timings;
+    private final boolean duplicate;
+
+    CaptureResult(Uri uri, String mimeType, String encoderName, long encodedBytes,
+                  StageTimings timings) {
+        this(uri, mimeType, encoderName, encodedBytes, timings, false);
+    }
+
+    private CaptureResult(Uri uri, String mimeType, String encoderName, long encodedBytes,
+                          StageTimings timings, boolean duplicate) {
+        this.uri = uri;
+        this.mimeType = mimeType;
+        this.encoderName = encoderName;
+        this.encodedBytes = encodedBytes;
+        this.timings = timings;
+        this.duplicate = duplicate;
+    }
+
+    /** A result for an unchanged frame that refers back to this one; nothing was written. */
+    CaptureResult duplicate(StageTimings duplicateTimings) {
+        return new CaptureResult(uri, mimeType, encoderName, 0, duplicateTimings, true);
+    }
+
+    public Uri getUri() {
+        return uri;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getEncoderName() {
+        return encoderName;
+    }
+
+    public long getEncodedBytes() {
+        return encodedBytes;
+    }
+
+    public StageTimings getTimings() {
+        return timings;
+    }
+
+    /** True when the frame matched the previous capture and {@link #getUri()} is reused. */
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+
+    @Override
+    public String toString() {
+        if (duplicate) {
+            return "duplicate " + timings;
+        }
+        return encoderName + " " + encodedBytes / 1024 + "KiB " + timings;
+    }
+}
@@ -0,0 +1,405 @@
+package com.example.globally_draggable_widget.capture;
+
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.hardware.display.DisplayManager;
+import android.hardware.display.VirtualDisplay;
+import android.media.Image;
+import android.media.ImageReader;
+import android.media.projection.MediaProjection;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import com.example.globally_draggable_widget.metrics.Counter;
+import com.example.globally_draggable_widget.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Long-lived capture session that keeps a {@link MediaProjection}, its
+ * {@link VirtualDisplay} and a small {@link ImageReader} ring warm between captures.
+ * The newest frame is always held, so a capture only has to convert it, unless its
+ * options ask for a frame composited after the request.
+ * <p>
+ * The display can run below native resolution with {@link #setScale(float)}, in which
+ * case the system compositor does the downscale and every later stage sees fewer pixels.
+ */
+public class CaptureSession implements CapturePipeline.FrameSource {
+    private static final String TAG = "CaptureSession";
+    private static final int MAX_IMAGES = 3;
+    public static final long DEFAULT_FRAME_TIMEOUT_MS = 1000;
+
+    public interface Listener {
+        void onSessionStopped(CaptureSession session);
+    }
+
+    private final CapturePipeline pipeline;
+    private final MediaProjection mediaProjection;
+    private final Handler handler;
+    private final int width;
+    private final int height;
+    private final int density;
+    private final Listener listener;
+    private final Object burstToken = new Object();
+    private final Runnable frameTimeout = this::onFrameTimeout;
+    private final Counter framesLost = MetricsRegistry.getInstance().counter("session.frames_lost");
+    private final Counter frameTimeouts =
+            MetricsRegistry.getInstance().counter("session.frame_timeouts");
+    // Captures waiting for a new enough frame; only touched on the pipeline thread
+    private final ArrayDeque<PendingCapture> waitingForFrame = new ArrayDeque<>();
+
+    private volatile ImageReader imageReader;
+    private volatile VirtualDisplay virtualDisplay;
+    // Only touched on the pipeline thread
+    private Image latestImage;
+    private boolean receivedFrame;
+    private volatile long frameTimeoutMs = DEFAULT_FRAME_TIMEOUT_MS;
+    private volatile boolean active;
+    private volatile boolean redirected;
+    private volatile float scale = 1f;
+
+    public CaptureSession(CapturePipeline pipeline, MediaProjection mediaProjection,
+                          int width, int height, int density, Listener listener) {
+        this.pipeline = pipeline;
+        this.mediaProjection = mediaProjection;
+        this.handler = pipeline.getHandler();
+        this.width = width;
+        this.height = height;
+        this.density = density;
+        this.listener = listener;
+    }
+
+    public void start() {
+        imageReader = createReader();
+
+        mediaProjection.registerCallback(new MediaProjection.Callback() {
+            @Override
+            public void onStop() {
+                Log.d(TAG, "Projection stopped");
+                stop();
+            }
+        }, handler);
+
+        virtualDisplay = mediaProjection.createVirtualDisplay(
+                "ScreenCapture",
+                imageReader.getWidth(),
+                imageReader.getHeight(),
+                density,
+                DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
+                imageReader.getSurface(),
+                null,
+                handler
+        );
+        active = true;
+        Log.d(TAG, "Session started " + imageReader.getWidth() + "x" + imageReader.getHeight());
+    }
+
+    private ImageReader createReader() {
+        ImageReader reader = ImageReader.newInstance(scaled(width), scaled(height),
+                PixelFormat.RGBA_8888, MAX_IMAGES);
+        reader.setOnImageAvailableListener(this::onImageAvailable, handler);
+        return reader;
+    }
+
+    private int scaled(int dimension) {
+        return Math.max(1, Math.round(dimension * scale));
+    }
+
+    /**
+     * Runs the display at {@code scale} times the native resolution, in (0, 1]. Captures
+     * requested after the switch wait for the first frame at the new size.
+     */
+    public void setScale(float scale) {
+        if (!(scale > 0f && scale <= 1f)) {
+            throw new IllegalArgumentException("scale must be in (0, 1]: " + scale);
+        }
+        handler.post(() -> applyScale(scale));
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    private void applyScale(float newScale) {
+        if (newScale == scale) {
+            return;
+        }
+        scale = newScale;
+        if (virtualDisplay == null || redirected) {
+            // start() or restore() picks up the new size
+            return;
+        }
+        swapReader();
+    }
+
+    private void swapReader() {
+        ImageReader previous = imageReader;
+        imageReader = createReader();
+        virtualDisplay.resize(imageReader.getWidth(), imageReader.getHeight(), density);
+        virtualDisplay.setSurface(imageReader.getSurface());
+        dropLatestFrame();
+        if (previous != null) {
+            previous.close();
+        }
+        Log.d(TAG, "Display now " + imageReader.getWidth() + "x" + imageReader.getHeight());
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public MediaProjection getMediaProjection() {
+        return mediaProjection;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Points the session's display at another consumer, such as an encoder input surface.
+     * A projection only allows one virtual display, so recording borrows this one; stills
+     * are unavailable until {@link #restore()} is called.
+     */
+    public void redirect(Surface surface, int surfaceWidth, int surfaceHeight) {
+        if (virtualDisplay == null) {
+            throw new IllegalStateException("Session not started");
+        }
+        redirected = true;
+        virtualDisplay.resize(surfaceWidth, surfaceHeight, density);
+        virtualDisplay.setSurface(surface);
+    }
+
+    public void restore() {
+        if (!redirected) {
+            return;
+        }
+        redirected = false;
+        ImageReader reader = imageReader;
+        if (virtualDisplay != null && reader != null) {
+            virtualDisplay.resize(reader.getWidth(), reader.getHeight(), density);
+            virtualDisplay.setSurface(reader.getSurface());
+        }
+        // The held frame predates the redirect; wait for the display to repaint
+        handler.post(() -> {
+            dropLatestFrame();
+            if (virtualDisplay != null && imageReader != null
+                    && (imageReader.getWidth() != scaled(width)
+                    || imageReader.getHeight() != scaled(height))) {
+                // A scale change arrived while recording
+                swapReader();
+            }
+        });
+    }
+
+    private void dropLatestFrame() {
+        if (latestImage != null) {
+            latestImage.close();
+            latestImage = null;
+        }
+    }
+
+    /**
+     * How long a capture waits for the display to deliver a frame before it fails.
+     */
+    public void setFrameTimeoutMs(long timeoutMs) {
+        frameTimeoutMs = timeoutMs;
+    }
+
+    private void onImageAvailable(ImageReader reader) {
+        if (reader != imageReader) {
+            // Replaced by a scale change; its surface no longer receives frames
+            return;
+        }
+        Image next;
+        try {
+            next = reader.acquireLatestImage();
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Image ring exhausted", e);
+            framesLost.increment();
+            return;
+        }
+        if (next != null) {
+            if (latestImage != null) {
+                latestImage.close();
+            }
+            latestImage = next;
+            receivedFrame = true;
+            dispatchWaiting();
+        }
+    }
+
+    private void dispatchWaiting() {
+        if (waitingForFrame.isEmpty()) {
+            return;
+        }
+        int waiting = waitingForFrame.size();
+        for (int i = 0; i < waiting; i++) {
+            PendingCapture pending = waitingForFrame.poll();
+            if (isFreshEnough(latestImage, pending.options)) {
+                startCapture(pending.options, pending.callback);
+            } else {
+                waitingForFrame.add(pending);
+            }
+        }
+        if (waitingForFrame.isEmpty()) {
+            handler.removeCallbacks(frameTimeout);
+        }
+    }
+
+    /**
+     * Display frames are timestamped on the {@link System#nanoTime()} clock when they are
+     * composited, so a frame at or after the requested time shows the screen as it was then.
+     */
+    private static boolean isFreshEnough(Image image, CaptureOptions options) {
+        return image.getTimestamp() >= options.getMinFrameTimeNanos();
+    }
+
+    private void onFrameTimeout() {
+        Log.e(TAG, "No frame within " + frameTimeoutMs + "ms");
+        frameTimeouts.increment();
+        failWaiting(new TimeoutException("No frame within " + frameTimeoutMs + "ms"));
+        if (!receivedFrame) {
+            // The display never produced anything; don't keep a dead projection around
+            stop();
+        }
+    }
+
+    private void failWaiting(Exception e) {
+        handler.removeCallbacks(frameTimeout);
+        PendingCapture pending;
+        while ((pending = waitingForFrame.poll()) != null) {
+            pipeline.deliverFailure(pending.callback, e);
+        }
+    }
+
+    @Override
+    public Image acquireFrame() {
+        return latestImage;
+    }
+
+    @Override
+    public void releaseFrame(Image image) {
+        // The session keeps ownership of the newest frame until a newer one replaces it
+    }
+
+    public void capture(CaptureOptions options, CapturePipeline.Callback callback) {
+        captureAt(SystemClock.uptimeMillis(), options, callback);
+    }
+
+    /**
+     * Captures {@code count} frames {@code intervalMs} apart, reusing the warm display.
+     * Duplicate frames are only matched within the burst.
+     */
+    public void burst(int count, long intervalMs, CaptureOptions options,
+                      CapturePipeline.Callback callback) {
+        // An earlier burst's file may have been deleted since; never point back at it
+        CaptureOptions burstOptions = options.withNewDuplicateScope();
+        long first = SystemClock.uptimeMillis();
+        for (int i = 0; i < count; i++) {
+            captureAt(first + i * intervalMs, burstOptions, callback);
+        }
+    }
+
+    private void captureAt(long uptimeMillis, CaptureOptions options,
+                           CapturePipeline.Callback callback) {
+        handler.postAtTime(() -> requestFrame(options, callback), burstToken, uptimeMillis);
+    }
+
+    private void requestFrame(CaptureOptions options, CapturePipeline.Callback callback) {
+        if (!active) {
+            pipeline.deliverFailure(callback, new IOException("Capture session stopped"));
+            return;
+        }
+        if (redirected) {
+            pipeline.deliverFailure(callback, new IOException("Display is busy recording"));
+            return;
+        }
+        if (latestImage != null && isFreshEnough(latestImage, options)) {
+            startCapture(options, callback);
+            return;
+        }
+        // Nothing on screen yet, or only an older frame than the caller asked for: run as
+        // soon as the display delivers a new enough one
+        if (waitingForFrame.isEmpty()) {
+            handler.postDelayed(frameTimeout, frameTimeoutMs);
+        }
+        waitingForFrame.add(new PendingCapture(options, callback));
+    }
+
+    private void startCapture(CaptureOptions options, CapturePipeline.Callback callback) {
+        Rect region = frameRegion(options.getCrop(), latestImage.getWidth(),
+                latestImage.getHeight());
+        if (region.isEmpty()) {
+            pipeline.deliverFailure(callback,
+                    new IllegalArgumentException("Crop is outside the display"));
+            return;
+        }
+        pipeline.capture(this, region, options, callback);
+    }
+
+    /**
+     * Maps a crop in display pixels onto a frame of the given size, clipped to the frame.
+     */
+    private Rect frameRegion(Rect crop, int frameWidth, int frameHeight) {
+        Rect region = new Rect(0, 0, frameWidth, frameHeight);
+        if (crop == null) {
+            return region;
+        }
+        float sx = (float) frameWidth / width;
+        float sy = (float) frameHeight / height;
+        Rect scaledCrop = new Rect(
+                (int) Math.floor(crop.left * sx),
+                (int) Math.floor(crop.top * sy),
+                (int) Math.ceil(crop.right * sx),
+                (int) Math.ceil(crop.bottom * sy));
+        if (!region.intersect(scaledCrop)) {
+            region.setEmpty();
+        }
+        return region;
+    }
+
+    public void stop() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        handler.removeCallbacksAndMessages(burstToken);
+        handler.post(this::release);
+        mediaProjection.stop();
+        if (listener != null) {
+            listener.onSessionStopped(this);
+        }
+    }
+
+    private void release() {
+        failWaiting(new IOException("Capture session stopped"));
+        if (virtualDisplay != null) {
+            virtualDisplay.release();
+            virtualDisplay = null;
+        }
+        dropLatestFrame();
+        if (imageReader != null) {
+            imageReader.close();
+            imageReader = null;
+        }
+    }
+
+    private static class PendingCapture {
+        final CaptureOptions options;
+        final CapturePipeline.Callback callback;
+
+        PendingCapture(CaptureOptions options, CapturePipeline.Callback callback) {
+            this.options = options;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.globally_draggable_widget.capture;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Growable in-memory sink for encoded images that exposes its contents without the copy
+ * {@link #toByteArray()} would make. Reused across captures.
+ */
+public class EncodeBuffer extends ByteArrayOutputStream {
+
+    public EncodeBuffer(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * Read-only view of the bytes written so far; invalidated by the next write or reset.
+     */
+    public synchronized ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buf, 0, count).asReadOnlyBuffer();
+    }
+}
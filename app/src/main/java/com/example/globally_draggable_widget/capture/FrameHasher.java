@@ -0,0 +1,124 @@
+package com.example.globally_draggable_widget.capture;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hashes an RGBA plane in square tiles so consecutive frames can be compared without
+ * converting or encoding them. Every byte of every visible pixel is read, so a one-pixel
+ * change such as a cursor blink changes its tile's hash; row padding is ignored. Packed
+ * planes are read eight bytes at a time.
+ */
+public final class FrameHasher {
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final long SEED = 0x632BE59BD9B4E019L;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final int tileSize;
+
+    public FrameHasher(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /** Number of tiles, and so hashes, a {@code width x height} frame produces. */
+    public int tileCount(int width, int height) {
+        return tilesAcross(width) * ((height + tileSize - 1) / tileSize);
+    }
+
+    private int tilesAcross(int width) {
+        return (width + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * Writes one hash per tile, row-major, into {@code out}. Pixels start at the buffer's
+     * position, which is left unchanged.
+     *
+     * @return the number of hashes written
+     */
+    public int hash(ByteBuffer rgba, int width, int height, int pixelStride, int rowStride,
+                    long[] out) {
+        int count = tileCount(width, height);
+        if (out.length < count) {
+            throw new IllegalArgumentException("out needs " + count + " entries");
+        }
+        if (pixelStride < BYTES_PER_PIXEL) {
+            throw new IllegalArgumentException("pixelStride " + pixelStride);
+        }
+        long lastRowEnd = (long) (height - 1) * rowStride + (long) (width - 1) * pixelStride
+                + BYTES_PER_PIXEL;
+        int base = rgba.position();
+        if (height > 0 && width > 0 && base + lastRowEnd > rgba.limit()) {
+            throw new IllegalArgumentException("Buffer too small for " + width + "x" + height);
+        }
+
+        int across = tilesAcross(width);
+        for (int i = 0; i < count; i++) {
+            out[i] = SEED;
+        }
+        for (int y = 0; y < height; y++) {
+            int tileRow = (y / tileSize) * across;
+            int rowStart = base + y * rowStride;
+            for (int tx = 0; tx < across; tx++) {
+                int x0 = tx * tileSize;
+                int pixels = Math.min(tileSize, width - x0);
+                int start = rowStart + x0 * pixelStride;
+                long h = out[tileRow + tx];
+                if (pixelStride == BYTES_PER_PIXEL) {
+                    h = mixPacked(rgba, start, pixels * BYTES_PER_PIXEL, h);
+                } else {
+                    for (int p = 0; p < pixels; p++) {
+                        h = mix(h, rgba.getInt(start + p * pixelStride));
+                    }
+                }
+                out[tileRow + tx] = h;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            out[i] = finish(out[i]);
+        }
+        return count;
+    }
+
+    private static long mixPacked(ByteBuffer rgba, int start, int bytes, long h) {
+        int end = start + bytes;
+        int offset = start;
+        for (; offset + Long.BYTES <= end; offset += Long.BYTES) {
+            h = mix(h, rgba.getLong(offset));
+        }
+        if (offset < end) {
+            // Odd pixel count: one trailing RGBA word
+            h = mix(h, rgba.getInt(offset));
+        }
+        return h;
+    }
+
+    private static long mix(long h, long value) {
+        h = (h ^ value) * MULTIPLIER;
+        return h ^ (h >>> 29);
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        return h ^ (h >>> 33);
+    }
+
+    /** Number of positions in {@code [0, count)} where the two hash arrays differ. */
+    public static int countChanged(long[] previous, long[] current, int count) {
+        int changed = 0;
+        for (int i = 0; i < count; i++) {
+            if (previous[i] != current[i]) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+}
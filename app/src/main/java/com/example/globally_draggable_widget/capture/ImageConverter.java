@@ -0,0 +1,77 @@
+package com.example.globally_draggable_widget.capture;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.media.Image;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts a region of an RGBA_8888 {@link Image} frame into a right-sized ARGB_8888
+ * {@link Bitmap} borrowed from a {@link BitmapPool}. Only the region's pixels are copied.
+ * Callers hand the bitmap back to the pool once done; the compaction buffer is reused
+ * between frames.
+ */
+public class ImageConverter {
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final BitmapPool bitmapPool;
+    private ByteBuffer scratch;
+
+    public ImageConverter(BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    public Bitmap convert(Image image, Rect region) {
+        Image.Plane plane = image.getPlanes()[0];
+        int pixelStride = plane.getPixelStride();
+        int rowStride = plane.getRowStride();
+        ByteBuffer buffer = regionStart(plane.getBuffer(), region, pixelStride, rowStride);
+        int width = region.width();
+        int height = region.height();
+
+        Bitmap target = bitmapPool.acquire(width, height);
+        if (PlaneCompactor.isTightlyPacked(width, pixelStride, rowStride, BYTES_PER_PIXEL)) {
+            // Rows are already contiguous: a single bulk copy into the bitmap
+            target.copyPixelsFromBuffer(buffer);
+        } else {
+            ByteBuffer packed = obtainScratch(width * height * BYTES_PER_PIXEL);
+            PlaneCompactor.compact(buffer, width, height, pixelStride, rowStride,
+                    BYTES_PER_PIXEL, packed);
+            packed.flip();
+            target.copyPixelsFromBuffer(packed);
+        }
+        return target;
+    }
+
+    /**
+     * View of {@code plane} positioned at the region's first pixel. Always a fresh view:
+     * the session hands the same {@link Image} to every capture until a newer frame
+     * arrives, and {@code Image.Plane.getBuffer()} returns the same buffer each time, so
+     * consuming the plane itself would leave nothing for the next capture.
+     */
+    static ByteBuffer regionStart(ByteBuffer plane, Rect region, int pixelStride,
+                                  int rowStride) {
+        return regionStart(plane, region.left, region.top, pixelStride, rowStride);
+    }
+
+    static ByteBuffer regionStart(ByteBuffer plane, int left, int top, int pixelStride,
+                                  int rowStride) {
+        ByteBuffer view = plane.duplicate();
+        view.position(plane.position() + top * rowStride + left * pixelStride);
+        return view;
+    }
+
+    private ByteBuffer obtainScratch(int size) {
+        if (scratch == null || scratch.capacity() < size) {
+            scratch = ByteBuffer.allocateDirect(size);
+        }
+        scratch.clear();
+        scratch.limit(size);
+        return scratch;
+    }
+
+    public void release() {
+        scratch = null;
+    }
+}
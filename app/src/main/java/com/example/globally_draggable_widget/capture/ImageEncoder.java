@@ -0,0 +1,21 @@
+package com.example.globally_draggable_widget.capture;
+
+import android.graphics.Bitmap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes a captured bitmap into a file format. Implementations are stateless and may be
+ * shared between captures.
+ */
+public interface ImageEncoder {
+    /** Short name used in logs and metrics, e.g. {@code "jpeg-90"}. */
+    String getName();
+
+    String getMimeType();
+
+    String getFileExtension();
+
+    void encode(Bitmap bitmap, OutputStream out) throws IOException;
+}
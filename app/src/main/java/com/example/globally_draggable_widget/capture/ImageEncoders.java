@@ -0,0 +1,102 @@
+package com.example.globally_draggable_widget.capture;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The built-in {@link ImageEncoder} tiers, from largest/lossless to smallest/lossy.
+ */
+public final class ImageEncoders {
+    public static final int DEFAULT_QUALITY = 90;
+
+    private static final ImageEncoder PNG =
+            new CompressEncoder("png", "image/png", "png", Bitmap.CompressFormat.PNG, 100);
+
+    private ImageEncoders() {
+    }
+
+    public static ImageEncoder png() {
+        return PNG;
+    }
+
+    /**
+     * Lossless WebP needs Q: before that the legacy WEBP format is lossy at every quality.
+     */
+    public static boolean isWebpLosslessSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+    }
+
+    /**
+     * Lossless WebP, or {@link #png()} where the platform can't write it, so this tier never
+     * degrades to lossy output.
+     */
+    @SuppressWarnings("deprecation")
+    public static ImageEncoder webpLossless() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return new CompressEncoder("webp-lossless", "image/webp", "webp",
+                    Bitmap.CompressFormat.WEBP_LOSSLESS, 100);
+        }
+        if (isWebpLosslessSupported()) {
+            // On Q the legacy WEBP format switches to lossless at quality 100
+            return new CompressEncoder("webp-lossless", "image/webp", "webp",
+                    Bitmap.CompressFormat.WEBP, 100);
+        }
+        return PNG;
+    }
+
+    @SuppressWarnings("deprecation")
+    public static ImageEncoder webpLossy(int quality) {
+        Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+        return new CompressEncoder("webp-" + quality, "image/webp", "webp", format,
+                Math.min(quality, 99));
+    }
+
+    public static ImageEncoder jpeg(int quality) {
+        return new CompressEncoder("jpeg-" + quality, "image/jpeg", "jpg",
+                Bitmap.CompressFormat.JPEG, quality);
+    }
+
+    private static class CompressEncoder implements ImageEncoder {
+        private final String name;
+        private final String mimeType;
+        private final String extension;
+        private final Bitmap.CompressFormat format;
+        private final int quality;
+
+        CompressEncoder(String name, String mimeType, String extension,
+                        Bitmap.CompressFormat format, int quality) {
+            this.name = name;
+            this.mimeType = mimeType;
+            this.extension = extension;
+            this.format = format;
+            this.quality = quality;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        @Override
+        public String getFileExtension() {
+            return extension;
+        }
+
+        @Override
+        public void encode(Bitmap bitmap, OutputStream out) throws IOException {
+            if (!bitmap.compress(format, quality, out)) {
+                throw new IOException("Failed to encode " + name);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.globally_draggable_widget.capture;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Estimates the Shannon entropy of an RGBA frame's luma from a sparse pixel sample. Flat
+ * UI screens score low and compress well losslessly; photos and video score high and are
+ * better served by a lossy format.
+ */
+public final class ImageEntropy {
+    /** Upper bound of {@link #estimate}: eight bits of luma. */
+    public static final double MAX_BITS = 8.0;
+
+    private static final int TARGET_SAMPLES = 16_384;
+
+    private ImageEntropy() {
+    }
+
+    /**
+     * @param rgba      pixels, R first, starting at the buffer's position
+     * @param histogram scratch array of 256 ints, reused between calls
+     * @return entropy in bits per pixel, in [0, 8]
+     */
+    public static double estimate(ByteBuffer rgba, int width, int height, int pixelStride,
+                                  int rowStride, int[] histogram) {
+        if (histogram.length < 256) {
+            throw new IllegalArgumentException("histogram needs 256 bins");
+        }
+        Arrays.fill(histogram, 0, 256, 0);
+
+        // Sample on a regular grid coarse enough to stay around TARGET_SAMPLES pixels
+        int step = Math.max(1, (int) Math.sqrt((double) width * height / TARGET_SAMPLES));
+        int base = rgba.position();
+        int samples = 0;
+        for (int y = 0; y < height; y += step) {
+            int offset = base + y * rowStride;
+            for (int x = 0; x < width; x += step) {
+                int p = offset + x * pixelStride;
+                int r = rgba.get(p) & 0xFF;
+                int g = rgba.get(p + 1) & 0xFF;
+                int b = rgba.get(p + 2) & 0xFF;
+                // Integer BT.601 luma
+                histogram[(77 * r + 150 * g + 29 * b) >> 8]++;
+                samples++;
+            }
+        }
+        if (samples == 0) {
+            return 0;
+        }
+
+        double entropy = 0;
+        for (int i = 0; i < 256; i++) {
+            int count = histogram[i];
+            if (count != 0) {
+                double p = (double) count / samples;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+}
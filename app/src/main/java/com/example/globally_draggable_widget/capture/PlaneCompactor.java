@@ -0,0 +1,71 @@
+package com.example.globally_draggable_widget.capture;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copies the visible pixels of a strided image plane into a tightly packed buffer,
+ * dropping the per-row padding that {@code ImageReader} adds for alignment.
+ */
+public final class PlaneCompactor {
+
+    private PlaneCompactor() {
+    }
+
+    /**
+     * True when rows are laid out back to back, so the plane can be copied in one go.
+     */
+    public static boolean isTightlyPacked(int width, int pixelStride, int rowStride,
+                                          int bytesPerPixel) {
+        return pixelStride == bytesPerPixel && rowStride == width * bytesPerPixel;
+    }
+
+    /**
+     * Writes {@code width x height} pixels of {@code bytesPerPixel} bytes each from
+     * {@code src} into {@code dst}, starting at the current position of both buffers.
+     * The position of {@code src} is left untouched; {@code dst} is advanced past the
+     * written pixels. The last row of {@code src} may omit its trailing padding.
+     */
+    public static void compact(ByteBuffer src, int width, int height, int pixelStride,
+                               int rowStride, int bytesPerPixel, ByteBuffer dst) {
+        int rowBytes = width * bytesPerPixel;
+        if (dst.remaining() < rowBytes * height) {
+            throw new IllegalArgumentException("Destination too small: " + dst.remaining()
+                    + " < " + rowBytes * height);
+        }
+        int base = src.position();
+        int lastRowEnd = base + (height - 1) * rowStride + (width - 1) * pixelStride + bytesPerPixel;
+        if (lastRowEnd > src.limit()) {
+            throw new IllegalArgumentException("Source too small for " + width + "x" + height
+                    + " with row stride " + rowStride);
+        }
+
+        if (isTightlyPacked(width, pixelStride, rowStride, bytesPerPixel)) {
+            ByteBuffer whole = src.duplicate();
+            whole.limit(base + rowBytes * height);
+            dst.put(whole);
+            return;
+        }
+
+        ByteBuffer row = src.duplicate();
+        if (pixelStride == bytesPerPixel) {
+            for (int y = 0; y < height; y++) {
+                int rowStart = base + y * rowStride;
+                row.limit(rowStart + rowBytes);
+                row.position(rowStart);
+                dst.put(row);
+            }
+            return;
+        }
+
+        // Interleaved planes: gather pixel by pixel
+        for (int y = 0; y < height; y++) {
+            int offset = base + y * rowStride;
+            for (int x = 0; x < width; x++) {
+                for (int b = 0; b < bytesPerPixel; b++) {
+                    dst.put(src.get(offset + b));
+                }
+                offset += pixelStride;
+            }
+        }
+    }
+}
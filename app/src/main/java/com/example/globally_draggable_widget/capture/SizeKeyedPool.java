@@ -0,0 +1,147 @@
+package com.example.globally_draggable_widget.capture;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Pool of reusable objects keyed by their pixel dimensions and capped by total resident
+ * bytes. Idle objects are evicted oldest-first when a release would exceed the cap.
+ * Thread-safe.
+ */
+public class SizeKeyedPool<T> {
+
+    public interface Allocator<T> {
+        T allocate(int width, int height);
+
+        long sizeOf(T item);
+
+        /** Called once an item leaves the pool for good. */
+        void discard(T item);
+    }
+
+    private static final class Entry<T> {
+        final long key;
+        final T item;
+        final long bytes;
+
+        Entry(long key, T item, long bytes) {
+            this.key = key;
+            this.item = item;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Allocator<T> allocator;
+    private final HashMap<Long, ArrayDeque<Entry<T>>> idle = new HashMap<>();
+    // Release order across all sizes, for eviction
+    private final ArrayDeque<Entry<T>> releaseOrder = new ArrayDeque<>();
+    private long maxBytes;
+    private long bytesResident;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public SizeKeyedPool(Allocator<T> allocator, long maxBytes) {
+        this.allocator = allocator;
+        setMaxBytes(maxBytes);
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        evictTo(maxBytes);
+    }
+
+    /** Returns an idle object of exactly this size, or allocates a new one. */
+    public T acquire(int width, int height) {
+        synchronized (this) {
+            ArrayDeque<Entry<T>> entries = idle.get(key(width, height));
+            Entry<T> entry = entries != null ? entries.pollLast() : null;
+            if (entry != null) {
+                releaseOrder.removeFirstOccurrence(entry);
+                bytesResident -= entry.bytes;
+                hits++;
+                return entry.item;
+            }
+            misses++;
+        }
+        return allocator.allocate(width, height);
+    }
+
+    /** Hands an object back for reuse; it is discarded if it cannot fit under the cap. */
+    public void release(T item, int width, int height) {
+        long bytes = allocator.sizeOf(item);
+        synchronized (this) {
+            if (bytes <= maxBytes) {
+                evictTo(maxBytes - bytes);
+                Entry<T> entry = new Entry<>(key(width, height), item, bytes);
+                ArrayDeque<Entry<T>> entries = idle.get(entry.key);
+                if (entries == null) {
+                    entries = new ArrayDeque<>();
+                    idle.put(entry.key, entries);
+                }
+                entries.addLast(entry);
+                releaseOrder.addLast(entry);
+                bytesResident += bytes;
+                return;
+            }
+            evictions++;
+        }
+        allocator.discard(item);
+    }
+
+    /** Discards every idle object. */
+    public synchronized void clear() {
+        evictTo(0);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getBytesResident() {
+        return bytesResident;
+    }
+
+    public synchronized int getIdleCount() {
+        return releaseOrder.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "hits=" + hits + " misses=" + misses + " evictions=" + evictions
+                + " resident=" + bytesResident + "/" + maxBytes;
+    }
+
+    private void evictTo(long limit) {
+        Iterator<Entry<T>> it = releaseOrder.iterator();
+        while (bytesResident > limit && it.hasNext()) {
+            Entry<T> eldest = it.next();
+            it.remove();
+            ArrayDeque<Entry<T>> entries = idle.get(eldest.key);
+            entries.removeFirstOccurrence(eldest);
+            if (entries.isEmpty()) {
+                idle.remove(eldest.key);
+            }
+            bytesResident -= eldest.bytes;
+            evictions++;
+            allocator.discard(eldest.item);
+        }
+    }
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.globally_draggable_widget.capture;
+
+import java.util.Locale;
+
+/**
+ * Wall-clock duration of each {@link CapturePipeline.Stage} for a single capture.
+ */
+public class StageTimings {
+    private final long[] stageNanos = new long[CapturePipeline.Stage.values().length];
+
+    void record(CapturePipeline.Stage stage, long nanos) {
+        stageNanos[stage.ordinal()] = nanos;
+    }
+
+    public long getNanos(CapturePipeline.Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    public long getMillis(CapturePipeline.Stage stage) {
+        return stageNanos[stage.ordinal()] / 1_000_000L;
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : stageNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    public long getTotalMillis() {
+        return getTotalNanos() / 1_000_000L;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (CapturePipeline.Stage stage : CapturePipeline.Stage.values()) {
+            sb.append(stage.name().toLowerCase(Locale.ROOT)).append('=')
+                    .append(getMillis(stage)).append("ms ");
+        }
+        sb.append("total=").append(getTotalMillis()).append("ms");
+        return sb.toString();
+    }
+}
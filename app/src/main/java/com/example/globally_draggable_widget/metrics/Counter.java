@@ -0,0 +1,28 @@
+package com.example.globally_draggable_widget.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count that only goes up between resets, safe to bump from any thread. Values start at
+ * zero with the process and again after {@link MetricsRegistry#reset()} (e.g.
+ * {@code dumpsys ... --reset}), so readers must not assume they cover the whole process.
+ */
+public class Counter {
+    private final AtomicLong value = new AtomicLong();
+
+    public void increment() {
+        value.incrementAndGet();
+    }
+
+    public void add(long delta) {
+        value.addAndGet(delta);
+    }
+
+    public long get() {
+        return value.get();
+    }
+
+    void reset() {
+        value.set(0);
+    }
+}
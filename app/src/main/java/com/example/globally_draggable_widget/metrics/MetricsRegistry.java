@@ -0,0 +1,74 @@
+package com.example.globally_draggable_widget.metrics;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide counters and latency histograms for the capture and recording paths.
+ * Look metrics up once and keep the reference; recording into them is lock-free.
+ * Latencies are recorded in microseconds and dumped in milliseconds.
+ */
+public final class MetricsRegistry {
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Clears every value; the metric objects handed out stay registered.
+     */
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Writes every metric, sorted by name, in a plain text layout meant for
+     * {@code dumpsys} and logs.
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("Counters:");
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            writer.println("  " + entry.getKey() + ": " + entry.getValue().get());
+        }
+        writer.println("Latency (ms):");
+        writer.println(String.format(Locale.ROOT, "  %-28s %7s %8s %8s %8s %8s",
+                "", "count", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            writer.println(String.format(Locale.ROOT, "  %-28s %7d %8.2f %8.2f %8.2f %8.2f",
+                    entry.getKey(), histogram.getCount(),
+                    microsToMillis(histogram.getValueAtPercentile(50)),
+                    microsToMillis(histogram.getValueAtPercentile(90)),
+                    microsToMillis(histogram.getValueAtPercentile(99)),
+                    microsToMillis(histogram.getMax())));
+        }
+        writer.flush();
+    }
+
+    private static double microsToMillis(long micros) {
+        return micros / 1000.0;
+    }
+}
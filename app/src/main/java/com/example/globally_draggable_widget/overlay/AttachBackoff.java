@@ -0,0 +1,47 @@
+package com.example.globally_draggable_widget.overlay;
+
+/**
+ * Bounded exponential backoff for retrying an overlay attach: each delay doubles from
+ * {@code initialDelayMs} up to {@code maxDelayMs}, and after {@code maxAttempts} retries
+ * it gives up until {@link #reset()}.
+ */
+public class AttachBackoff {
+    public static final long EXHAUSTED = -1;
+
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final int maxAttempts;
+
+    private int attempts;
+
+    public AttachBackoff(long initialDelayMs, long maxDelayMs, int maxAttempts) {
+        if (initialDelayMs <= 0 || maxDelayMs < initialDelayMs || maxAttempts < 1) {
+            throw new IllegalArgumentException("Invalid backoff " + initialDelayMs + "/"
+                    + maxDelayMs + "/" + maxAttempts);
+        }
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Delay before the next retry, or {@link #EXHAUSTED} once every attempt has been used.
+     */
+    public long nextDelayMs() {
+        if (attempts >= maxAttempts) {
+            return EXHAUSTED;
+        }
+        // Shift is capped so the doubling can't overflow before hitting the ceiling
+        long delay = initialDelayMs << Math.min(attempts, 30);
+        attempts++;
+        return Math.min(delay, maxDelayMs);
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void reset() {
+        attempts = 0;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.globally_draggable_widget.overlay;
+
+/**
+ * Plain Java drag physics for the floating button. While the finger is down it follows
+ * every historical sample and can extrapolate one frame ahead to hide touch-to-display
+ * latency. On release it flings with exponential friction on the vertical axis and
+ * springs to the nearer horizontal screen edge. Nothing here allocates after construction.
+ */
+public class DragEngine {
+    /** Exponential velocity decay rate of a fling, per second. */
+    private static final float FRICTION = 4f;
+    /** Natural frequency of the edge snap spring, in radians per second. */
+    private static final float SNAP_OMEGA = (float) (2 * Math.PI * 2.5);
+    private static final float REST_VELOCITY = 10f;
+    private static final float REST_DISTANCE = 0.5f;
+    private static final long MAX_STEP_MS = 8;
+    private static final long MAX_FRAME_MS = 100;
+
+    private final VelocityEstimator velocity = new VelocityEstimator();
+    private final float maxPredictionPx;
+
+    private float minX;
+    private float minY;
+    private float maxX = Float.MAX_VALUE;
+    private float maxY = Float.MAX_VALUE;
+
+    private float x;
+    private float y;
+    private float velocityX;
+    private float velocityY;
+    private float snapTargetX;
+    private long lastStepMs;
+    private boolean animating;
+
+    /**
+     * @param maxPredictionPx cap on how far ahead of the last sample a prediction may land
+     */
+    public DragEngine(float maxPredictionPx) {
+        this.maxPredictionPx = maxPredictionPx;
+    }
+
+    public void setBounds(float minX, float minY, float maxX, float maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = Math.max(minX, maxX);
+        this.maxY = Math.max(minY, maxY);
+    }
+
+    public void down(float x, float y, long timeMs) {
+        animating = false;
+        velocity.clear();
+        this.x = x;
+        this.y = y;
+        velocity.add(x, y, timeMs);
+    }
+
+    /**
+     * Adds one pointer sample; feed historical samples first, oldest to newest.
+     */
+    public void move(float x, float y, long timeMs) {
+        this.x = x;
+        this.y = y;
+        velocity.add(x, y, timeMs);
+    }
+
+    public float predictX(long horizonMs) {
+        return predict(x, velocity.getVelocityX(), horizonMs, minX, maxX);
+    }
+
+    public float predictY(long horizonMs) {
+        return predict(y, velocity.getVelocityY(), horizonMs, minY, maxY);
+    }
+
+    /**
+     * Refreshes the velocity estimate used by {@link #predictX}/{@link #predictY}. Call
+     * once per batch of samples rather than per sample.
+     */
+    public void updateVelocity(long nowMs) {
+        velocity.compute(nowMs);
+    }
+
+    private float predict(float position, float v, long horizonMs, float min, float max) {
+        float delta = v * horizonMs / 1000f;
+        delta = Math.max(-maxPredictionPx, Math.min(maxPredictionPx, delta));
+        return clamp(position + delta, min, max);
+    }
+
+    /**
+     * Ends the drag and starts the fling/snap animation.
+     *
+     * @return true if the button needs to animate to rest
+     */
+    public boolean release(long timeMs) {
+        velocity.compute(timeMs);
+        velocityX = velocity.getVelocityX();
+        velocityY = velocity.getVelocityY();
+        x = clamp(x, minX, maxX);
+        y = clamp(y, minY, maxY);
+
+        // Snap to whichever edge the fling would carry the button closest to
+        float projectedX = x + velocityX / FRICTION;
+        snapTargetX = projectedX - minX < maxX - projectedX ? minX : maxX;
+
+        lastStepMs = timeMs;
+        animating = !isAtRest();
+        return animating;
+    }
+
+    /**
+     * Advances the animation to {@code frameTimeMs}.
+     *
+     * @return true while still animating
+     */
+    public boolean step(long frameTimeMs) {
+        if (!animating) {
+            return false;
+        }
+        long elapsed = Math.min(frameTimeMs - lastStepMs, MAX_FRAME_MS);
+        lastStepMs = frameTimeMs;
+        while (elapsed > 0) {
+            long stepMs = Math.min(elapsed, MAX_STEP_MS);
+            integrate(stepMs / 1000f);
+            elapsed -= stepMs;
+        }
+        if (isAtRest()) {
+            x = snapTargetX;
+            velocityX = 0;
+            velocityY = 0;
+            animating = false;
+        }
+        return animating;
+    }
+
+    private void integrate(float dt) {
+        // Critically damped spring towards the snap edge
+        float displacement = x - snapTargetX;
+        velocityX += (-SNAP_OMEGA * SNAP_OMEGA * displacement - 2 * SNAP_OMEGA * velocityX) * dt;
+        x += velocityX * dt;
+
+        // Friction fling, stopping dead at the top and bottom edges
+        velocityY *= (float) Math.exp(-FRICTION * dt);
+        y += velocityY * dt;
+        if (y <= minY || y >= maxY) {
+            y = clamp(y, minY, maxY);
+            velocityY = 0;
+        }
+    }
+
+    private boolean isAtRest() {
+        return Math.abs(x - snapTargetX) < REST_DISTANCE
+                && Math.abs(velocityX) < REST_VELOCITY
+                && Math.abs(velocityY) < REST_VELOCITY;
+    }
+
+    public boolean isAnimating() {
+        return animating;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public float getVelocityX() {
+        return velocityX;
+    }
+
+    public float getVelocityY() {
+        return velocityY;
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
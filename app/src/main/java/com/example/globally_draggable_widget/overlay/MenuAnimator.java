@@ -0,0 +1,161 @@
+package com.example.globally_draggable_widget.overlay;
+
+import android.os.Build;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.animation.DecelerateInterpolator;
+
+import com.example.globally_draggable_widget.R;
+
+/**
+ * Expands and collapses the overlay menu with alpha/scale/translation transforms. These
+ * only change {@code RenderNode} properties, and the menu is drawn into a hardware layer
+ * for the duration of the animation, so frames composite a cached texture instead of
+ * re-recording the menu. The menu itself only switches between {@code VISIBLE} and
+ * {@code INVISIBLE}; the owner grows the window by the menu's slot just before an expand
+ * and shrinks it again once the collapse has finished, so only those two toggles relayout.
+ */
+public class MenuAnimator {
+    private static final String TAG = "MenuAnimator";
+    private static final long DURATION_MS = 160;
+    private static final float COLLAPSED_SCALE = 0.6f;
+
+    public interface LatencyListener {
+        /** Time from a toggle request to the first frame that shows it. */
+        void onToggleLatency(long nanos);
+    }
+
+    private final View menu;
+    // The menu fills a fixed-size slot; its own size is still 0 on the first expand
+    private final float menuWidth;
+    private final float menuHeight;
+    private final DecelerateInterpolator interpolator = new DecelerateInterpolator();
+    private final Runnable frameCommitted = this::onFirstFrame;
+    private final Choreographer.FrameCallback frameStarted = frameTimeNanos -> onFirstFrame();
+    private LatencyListener latencyListener;
+    private boolean expanded;
+    private Runnable collapsedAction;
+    private long toggleStartNanos;
+    private long lastToggleLatencyNanos = -1;
+
+    public MenuAnimator(View menu) {
+        this.menu = menu;
+        menuWidth = menu.getResources().getDimension(R.dimen.overlay_menu_width);
+        menuHeight = menu.getResources().getDimension(R.dimen.overlay_menu_height);
+    }
+
+    public void setLatencyListener(LatencyListener listener) {
+        latencyListener = listener;
+    }
+
+    public boolean isExpanded() {
+        return expanded;
+    }
+
+    public void setExpanded(boolean expand) {
+        setExpanded(expand, null);
+    }
+
+    /**
+     * @param onCollapsed run on the main thread once a collapse has finished and the menu is
+     *                    invisible; dropped if the menu is expanded again first
+     */
+    public void setExpanded(boolean expand, Runnable onCollapsed) {
+        if (expand == expanded) {
+            if (!expand && onCollapsed != null) {
+                if (menu.getVisibility() == View.VISIBLE) {
+                    // Still collapsing
+                    Runnable previous = collapsedAction;
+                    collapsedAction = previous == null ? onCollapsed : () -> {
+                        previous.run();
+                        onCollapsed.run();
+                    };
+                } else {
+                    onCollapsed.run();
+                }
+            }
+            return;
+        }
+        expanded = expand;
+        if (collapsedAction != null) {
+            Log.d(TAG, "Menu reopened before the collapse finished");
+            collapsedAction = null;
+        }
+        startLatencyMeasurement();
+
+        menu.animate().cancel();
+        // Grow out of the main button, which sits at the menu's end
+        menu.setPivotX(menuWidth);
+        menu.setPivotY(menuHeight / 2f);
+        float hiddenOffset = menuWidth * (1 - COLLAPSED_SCALE) / 2f;
+
+        if (expand) {
+            if (menu.getVisibility() != View.VISIBLE) {
+                menu.setAlpha(0f);
+                menu.setScaleX(COLLAPSED_SCALE);
+                menu.setScaleY(COLLAPSED_SCALE);
+                menu.setTranslationX(hiddenOffset);
+                // The slot has already been laid out in the grown window; showing the menu
+                // inside it only invalidates
+                menu.setVisibility(View.VISIBLE);
+            }
+            menu.animate()
+                    .alpha(1f)
+                    .scaleX(1f)
+                    .scaleY(1f)
+                    .translationX(0f)
+                    .setDuration(DURATION_MS)
+                    .setInterpolator(interpolator)
+                    .withLayer();
+        } else {
+            menu.animate()
+                    .alpha(0f)
+                    .scaleX(COLLAPSED_SCALE)
+                    .scaleY(COLLAPSED_SCALE)
+                    .translationX(hiddenOffset)
+                    .setDuration(DURATION_MS)
+                    .setInterpolator(interpolator)
+                    .withLayer()
+                    .withEndAction(this::onCollapseEnd);
+            collapsedAction = onCollapsed;
+        }
+    }
+
+    private void onCollapseEnd() {
+        menu.setVisibility(View.INVISIBLE);
+        Runnable action = collapsedAction;
+        collapsedAction = null;
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    private void startLatencyMeasurement() {
+        toggleStartNanos = System.nanoTime();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // Overlay windows have no Window to attach FrameMetrics to; the frame commit
+            // callback fires once the first frame with the change is handed to the GPU
+            menu.getViewTreeObserver().registerFrameCommitCallback(frameCommitted);
+        } else {
+            Choreographer.getInstance().postFrameCallback(frameStarted);
+        }
+    }
+
+    private void onFirstFrame() {
+        if (toggleStartNanos == 0) {
+            return;
+        }
+        lastToggleLatencyNanos = System.nanoTime() - toggleStartNanos;
+        toggleStartNanos = 0;
+        Log.d(TAG, "Toggle to first frame: " + lastToggleLatencyNanos / 1000 + "us");
+        if (latencyListener != null) {
+            latencyListener.onToggleLatency(lastToggleLatencyNanos);
+        }
+    }
+
+    /** Latest toggle-to-first-frame latency in nanoseconds, or -1 before the first toggle. */
+    public long getLastToggleLatencyNanos() {
+        return lastToggleLatencyNanos;
+    }
+}
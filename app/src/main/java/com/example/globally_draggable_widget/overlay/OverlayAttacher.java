@@ -0,0 +1,159 @@
+package com.example.globally_draggable_widget.overlay;
+
+import android.app.AppOpsManager;
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.os.Handler;
+import android.provider.Settings;
+import android.util.Log;
+import android.view.Display;
+
+/**
+ * Attaches the overlay window when it can actually succeed instead of polling. Attempts
+ * are triggered by the overlay permission being granted, the default display changing
+ * state and configuration changes; only failures with the permission in place fall back
+ * to {@link AttachBackoff}. While the permission is missing nothing is scheduled.
+ * Must be used on the handler's thread.
+ */
+public class OverlayAttacher {
+    private static final String TAG = "OverlayAttacher";
+    private static final long INITIAL_RETRY_MS = 50;
+    private static final long MAX_RETRY_MS = 5000;
+    private static final int MAX_RETRIES = 8;
+
+    public interface Attach {
+        /** Adds the overlay window; false if it could not be added yet. */
+        boolean tryAttach();
+    }
+
+    private final Context context;
+    private final Handler handler;
+    private final Attach attach;
+    private final AppOpsManager appOps;
+    private final DisplayManager displayManager;
+    private final AttachBackoff backoff =
+            new AttachBackoff(INITIAL_RETRY_MS, MAX_RETRY_MS, MAX_RETRIES);
+    private final Runnable retry = this::retry;
+
+    private boolean watching;
+    private boolean attached;
+
+    public OverlayAttacher(Context context, Handler handler, Attach attach) {
+        this.context = context.getApplicationContext();
+        this.handler = handler;
+        this.attach = attach;
+        this.appOps = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
+        this.displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+    }
+
+    /**
+     * Attaches right away if possible, otherwise waits for the next event.
+     */
+    public void start() {
+        if (!watching) {
+            watching = true;
+            if (appOps != null) {
+                appOps.startWatchingMode(AppOpsManager.OPSTR_SYSTEM_ALERT_WINDOW,
+                        context.getPackageName(), opChangedListener);
+            }
+            if (displayManager != null) {
+                displayManager.registerDisplayListener(displayListener, handler);
+            }
+        }
+        attempt(false);
+    }
+
+    public void onConfigurationChanged() {
+        attempt(false);
+    }
+
+    public void stop() {
+        handler.removeCallbacks(retry);
+        if (!watching) {
+            return;
+        }
+        watching = false;
+        if (appOps != null) {
+            appOps.stopWatchingMode(opChangedListener);
+        }
+        if (displayManager != null) {
+            displayManager.unregisterDisplayListener(displayListener);
+        }
+    }
+
+    /**
+     * @param permissionChanged the op just changed; {@code canDrawOverlays} can lag
+     *                          behind the callback, so rely on the backoff instead
+     */
+    private void attempt(boolean permissionChanged) {
+        if (attached) {
+            return;
+        }
+        handler.removeCallbacks(retry);
+        backoff.reset();
+        if (!permissionChanged && !Settings.canDrawOverlays(context)) {
+            Log.d(TAG, "No overlay permission, waiting for it to be granted");
+            return;
+        }
+        if (permissionChanged) {
+            scheduleRetry();
+        } else {
+            retry();
+        }
+    }
+
+    private void retry() {
+        if (attached) {
+            return;
+        }
+        if (attach.tryAttach()) {
+            attached = true;
+            Log.d(TAG, "Overlay attached after " + backoff.getAttempts() + " retries");
+            return;
+        }
+        scheduleRetry();
+    }
+
+    private void scheduleRetry() {
+        long delay = backoff.nextDelayMs();
+        if (delay == AttachBackoff.EXHAUSTED) {
+            Log.e(TAG, "Giving up attaching the overlay until the next display or "
+                    + "permission change");
+            return;
+        }
+        handler.postDelayed(retry, delay);
+    }
+
+    private final AppOpsManager.OnOpChangedListener opChangedListener =
+            new AppOpsManager.OnOpChangedListener() {
+                @Override
+                public void onOpChanged(String op, String packageName) {
+                    // Delivered on a binder thread
+                    if (context.getPackageName().equals(packageName)) {
+                        handler.post(() -> attempt(true));
+                    }
+                }
+            };
+
+    private final DisplayManager.DisplayListener displayListener =
+            new DisplayManager.DisplayListener() {
+                @Override
+                public void onDisplayAdded(int displayId) {
+                }
+
+                @Override
+                public void onDisplayRemoved(int displayId) {
+                }
+
+                @Override
+                public void onDisplayChanged(int displayId) {
+                    if (displayId != Display.DEFAULT_DISPLAY || attached) {
+                        return;
+                    }
+                    Display display = displayManager.getDisplay(displayId);
+                    if (display != null && display.getState() == Display.STATE_ON) {
+                        attempt(false);
+                    }
+                }
+            };
+}
@@ -0,0 +1,110 @@
+package com.example.globally_draggable_widget.overlay;
+
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.WindowManager;
+
+/**
+ * Moves an overlay window at most once per display frame. Each
+ * {@code WindowManager.updateViewLayout} is a binder call into the system server, and
+ * touch panels report movement several times per vsync, so positions are latched and
+ * applied from a {@link Choreographer} frame callback. Must be used on the main thread.
+ */
+public class OverlayPositionUpdater implements Choreographer.FrameCallback {
+    private static final String TAG = "OverlayPositionUpdater";
+
+    private final WindowManager windowManager;
+    private final View view;
+    private final WindowManager.LayoutParams params;
+    private final Choreographer choreographer;
+
+    private int pendingX;
+    private int pendingY;
+    private boolean framePosted;
+    private long requestedMoves;
+    private long layoutUpdates;
+
+    public OverlayPositionUpdater(WindowManager windowManager, View view,
+                                  WindowManager.LayoutParams params) {
+        this.windowManager = windowManager;
+        this.view = view;
+        this.params = params;
+        this.choreographer = Choreographer.getInstance();
+        pendingX = params.x;
+        pendingY = params.y;
+    }
+
+    /**
+     * Requests the window at ({@code x}, {@code y}); applied on the next vsync.
+     */
+    public void moveTo(int x, int y) {
+        pendingX = x;
+        pendingY = y;
+        requestedMoves++;
+        if (!framePosted) {
+            framePosted = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    /** Latest requested position, which may not have reached the window yet. */
+    public int getX() {
+        return pendingX;
+    }
+
+    public int getY() {
+        return pendingY;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        framePosted = false;
+        apply();
+    }
+
+    /**
+     * Applies any pending position now instead of waiting for the next frame.
+     */
+    public void flush() {
+        if (framePosted) {
+            choreographer.removeFrameCallback(this);
+            framePosted = false;
+        }
+        apply();
+    }
+
+    public void cancel() {
+        if (framePosted) {
+            choreographer.removeFrameCallback(this);
+            framePosted = false;
+        }
+    }
+
+    private void apply() {
+        if (params.x == pendingX && params.y == pendingY) {
+            return;
+        }
+        params.x = pendingX;
+        params.y = pendingY;
+        try {
+            windowManager.updateViewLayout(view, params);
+            layoutUpdates++;
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating overlay position", e);
+        }
+    }
+
+    public long getRequestedMoves() {
+        return requestedMoves;
+    }
+
+    public long getLayoutUpdates() {
+        return layoutUpdates;
+    }
+
+    /** Binder calls avoided by coalescing moves into frames. */
+    public long getIpcsSaved() {
+        return requestedMoves - layoutUpdates;
+    }
+}
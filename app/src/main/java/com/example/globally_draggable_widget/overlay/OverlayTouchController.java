@@ -0,0 +1,185 @@
+package com.example.globally_draggable_widget.overlay;
+
+import android.annotation.SuppressLint;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Touch handling for the floating button: tap detection, predictive drag and the
+ * release fling. All state is primitive fields and the {@link DragEngine}, so the
+ * per-event path performs no allocation and builds no strings. Window updates and
+ * frame scheduling go through {@link Host}, which keeps this class testable on the JVM.
+ */
+public class OverlayTouchController implements View.OnTouchListener {
+    private static final float TOUCH_SLOP_PX = 10;
+
+    public interface Host {
+        /** False while touches should fall through, e.g. when the menu is open. */
+        boolean isDragEnabled();
+
+        int getWindowX();
+
+        int getWindowY();
+
+        /** Moves the window on the next frame; repeated calls within a frame coalesce. */
+        void moveWindow(int x, int y);
+
+        /** Moves the window immediately. */
+        void commitWindow(int x, int y);
+
+        /** Schedules a call to {@link #animate(long)} on the next display frame. */
+        void requestAnimationFrame();
+
+        void cancelAnimationFrame();
+
+        void onTap();
+
+        void onDragFinished();
+    }
+
+    private final Host host;
+    private final DragEngine engine;
+
+    private float touchX;
+    private float touchY;
+    private int offsetX;
+    private int offsetY;
+    private boolean tracking;
+    private boolean dragging;
+    private long frameIntervalMs = 16;
+
+    public OverlayTouchController(Host host, float maxPredictionPx) {
+        this.host = host;
+        this.engine = new DragEngine(maxPredictionPx);
+    }
+
+    /**
+     * Sets the range the window may occupy and the display frame interval used for
+     * prediction. Call when the display or overlay size changes, not per event.
+     */
+    public void setDragBounds(int minX, int maxX, int maxY, long frameIntervalMs) {
+        engine.setBounds(minX, 0, maxX, maxY);
+        this.frameIntervalMs = frameIntervalMs;
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                return handleDown(event.getRawX(), event.getRawY(), event.getEventTime());
+
+            case MotionEvent.ACTION_MOVE:
+                if (!tracking) {
+                    return false;
+                }
+                // Historical samples share the batch's view-to-screen offset
+                float rawOffsetX = event.getRawX() - event.getX();
+                float rawOffsetY = event.getRawY() - event.getY();
+                int history = event.getHistorySize();
+                for (int i = 0; i < history; i++) {
+                    handleSample(event.getHistoricalX(i) + rawOffsetX,
+                            event.getHistoricalY(i) + rawOffsetY,
+                            event.getHistoricalEventTime(i));
+                }
+                return handleMove(event.getRawX(), event.getRawY(), event.getEventTime());
+
+            case MotionEvent.ACTION_UP:
+                return handleUp(event.getEventTime());
+
+            case MotionEvent.ACTION_CANCEL:
+                return handleCancel(event.getEventTime());
+        }
+        return false;
+    }
+
+    boolean handleDown(float rawX, float rawY, long timeMs) {
+        if (!host.isDragEnabled()) {
+            tracking = false;
+            return false;
+        }
+        host.cancelAnimationFrame();
+        touchX = rawX;
+        touchY = rawY;
+        offsetX = host.getWindowX();
+        offsetY = host.getWindowY();
+        tracking = true;
+        dragging = false;
+        engine.down(offsetX, offsetY, timeMs);
+        return true;
+    }
+
+    /**
+     * Feeds one pointer sample in screen coordinates without moving the window.
+     */
+    void handleSample(float rawX, float rawY, long timeMs) {
+        engine.move(offsetX + rawX - touchX, offsetY + rawY - touchY, timeMs);
+    }
+
+    boolean handleMove(float rawX, float rawY, long timeMs) {
+        if (!tracking) {
+            return false;
+        }
+        handleSample(rawX, rawY, timeMs);
+        if (!dragging
+                && (Math.abs(rawX - touchX) > TOUCH_SLOP_PX || Math.abs(rawY - touchY) > TOUCH_SLOP_PX)) {
+            dragging = true;
+        }
+        if (dragging) {
+            // Draw where the finger will be when this frame reaches the screen
+            engine.updateVelocity(timeMs);
+            host.moveWindow((int) engine.predictX(frameIntervalMs),
+                    (int) engine.predictY(frameIntervalMs));
+        }
+        return true;
+    }
+
+    boolean handleUp(long timeMs) {
+        if (!tracking) {
+            return false;
+        }
+        tracking = false;
+        if (!dragging) {
+            host.onTap();
+            return true;
+        }
+        finishDrag(timeMs);
+        return true;
+    }
+
+    boolean handleCancel(long timeMs) {
+        if (!tracking) {
+            return false;
+        }
+        tracking = false;
+        if (dragging) {
+            finishDrag(timeMs);
+        }
+        return true;
+    }
+
+    private void finishDrag(long timeMs) {
+        dragging = false;
+        if (engine.release(timeMs)) {
+            host.requestAnimationFrame();
+        } else {
+            host.commitWindow((int) engine.getX(), (int) engine.getY());
+        }
+        host.onDragFinished();
+    }
+
+    /**
+     * Advances the release animation to {@code frameTimeMs}.
+     *
+     * @return true if another frame is needed
+     */
+    public boolean animate(long frameTimeMs) {
+        boolean animating = engine.step(frameTimeMs);
+        host.commitWindow((int) engine.getX(), (int) engine.getY());
+        return animating;
+    }
+
+    public boolean isDragging() {
+        return dragging;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.globally_draggable_widget.overlay;
+
+/**
+ * Estimates pointer velocity with a least-squares line fit over the most recent samples,
+ * like the platform {@code VelocityTracker} but usable off-device. Samples live in
+ * fixed-size primitive rings, so adding them never allocates.
+ */
+public class VelocityEstimator {
+    private static final int CAPACITY = 20;
+    /** Only samples this recent take part in the fit. */
+    private static final long HORIZON_MS = 100;
+    /** A finger resting this long before release has no velocity. */
+    private static final long STALE_MS = 40;
+
+    private final float[] xs = new float[CAPACITY];
+    private final float[] ys = new float[CAPACITY];
+    private final long[] times = new long[CAPACITY];
+    private int head;
+    private int size;
+    private float velocityX;
+    private float velocityY;
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        velocityX = 0;
+        velocityY = 0;
+    }
+
+    public void add(float x, float y, long timeMs) {
+        xs[head] = x;
+        ys[head] = y;
+        times[head] = timeMs;
+        head = (head + 1) % CAPACITY;
+        if (size < CAPACITY) {
+            size++;
+        }
+    }
+
+    /**
+     * Fits the samples taken within {@link #HORIZON_MS} of the newest one. Velocities
+     * are in pixels per second.
+     */
+    public void compute(long nowMs) {
+        velocityX = 0;
+        velocityY = 0;
+        if (size < 2) {
+            return;
+        }
+        int newest = (head - 1 + CAPACITY) % CAPACITY;
+        long newestTime = times[newest];
+        if (nowMs - newestTime > STALE_MS) {
+            return;
+        }
+
+        double sumT = 0;
+        double sumX = 0;
+        double sumY = 0;
+        double sumTT = 0;
+        double sumTX = 0;
+        double sumTY = 0;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int index = (newest - i + CAPACITY) % CAPACITY;
+            long age = newestTime - times[index];
+            if (age > HORIZON_MS) {
+                break;
+            }
+            double t = -age;
+            sumT += t;
+            sumX += xs[index];
+            sumY += ys[index];
+            sumTT += t * t;
+            sumTX += t * xs[index];
+            sumTY += t * ys[index];
+            count++;
+        }
+        double denominator = count * sumTT - sumT * sumT;
+        if (count < 2 || denominator == 0) {
+            return;
+        }
+        velocityX = (float) ((count * sumTX - sumT * sumX) / denominator * 1000);
+        velocityY = (float) ((count * sumTY - sumT * sumY) / denominator * 1000);
+    }
+
+    public float getVelocityX() {
+        return velocityX;
+    }
+
+    public float getVelocityY() {
+        return velocityY;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.globally_draggable_widget.record;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioPlaybackCaptureConfiguration;
+import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaRecorder;
+import android.media.projection.MediaProjection;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Captures microphone or internal audio with {@link AudioRecord} and encodes it to AAC on
+ * its own thread. PCM is read straight into the codec's direct input buffers, which the
+ * codec pools, so the loop does not allocate once running.
+ */
+class AudioEncoder implements Runnable {
+    interface FailureListener {
+        /** Called on the audio thread; the video track carries on without audio. */
+        void onAudioFailed(Exception e);
+    }
+
+    private static final String TAG = "AudioEncoder";
+    private static final int SAMPLE_RATE = 48_000;
+    private static final int CHANNEL_COUNT = 2;
+    private static final int BYTES_PER_FRAME = CHANNEL_COUNT * 2;
+    private static final int BITRATE = 128_000;
+    // One AAC access unit worth of PCM
+    private static final int CHUNK_BYTES = 1024 * BYTES_PER_FRAME;
+    private static final long DEQUEUE_TIMEOUT_US = 10_000;
+    private static final long TIMESTAMP_INTERVAL_FRAMES = SAMPLE_RATE;
+    // Bounds the end-of-stream handshake to roughly one second
+    private static final int MAX_EOS_ATTEMPTS = 100;
+
+    private final AudioRecord audioRecord;
+    private final MediaCodec codec;
+    private final AudioPtsTracker ptsTracker = new AudioPtsTracker(SAMPLE_RATE);
+    private final AudioTimestamp timestamp = new AudioTimestamp();
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private MuxerSink sink;
+    private FailureListener failureListener;
+    private int track = -1;
+    private long nextTimestampFrame;
+    private Thread thread;
+    private volatile boolean running;
+
+    private AudioEncoder(AudioRecord audioRecord, MediaCodec codec) {
+        this.audioRecord = audioRecord;
+        this.codec = codec;
+    }
+
+    /**
+     * Creates an encoder for {@code source}, or returns null when audio is disabled or
+     * unavailable (no permission, or the device refused to open the source).
+     */
+    @SuppressLint("MissingPermission")
+    static AudioEncoder create(Context context, MediaProjection projection,
+                               RecordingConfig.AudioSource source) throws IOException {
+        if (source == RecordingConfig.AudioSource.NONE) {
+            return null;
+        }
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.RECORD_AUDIO)
+                != PackageManager.PERMISSION_GRANTED) {
+            Log.d(TAG, "RECORD_AUDIO not granted, recording without audio");
+            return null;
+        }
+
+        AudioFormat pcm = new AudioFormat.Builder()
+                .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                .setSampleRate(SAMPLE_RATE)
+                .setChannelMask(AudioFormat.CHANNEL_IN_STEREO)
+                .build();
+        int minBuffer = AudioRecord.getMinBufferSize(SAMPLE_RATE,
+                AudioFormat.CHANNEL_IN_STEREO, AudioFormat.ENCODING_PCM_16BIT);
+        int bufferSize = Math.max(minBuffer, CHUNK_BYTES) * 4;
+
+        AudioRecord record;
+        if (source == RecordingConfig.AudioSource.INTERNAL
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            AudioPlaybackCaptureConfiguration playback =
+                    new AudioPlaybackCaptureConfiguration.Builder(projection)
+                            .addMatchingUsage(AudioAttributes.USAGE_MEDIA)
+                            .addMatchingUsage(AudioAttributes.USAGE_GAME)
+                            .addMatchingUsage(AudioAttributes.USAGE_UNKNOWN)
+                            .build();
+            record = new AudioRecord.Builder()
+                    .setAudioFormat(pcm)
+                    .setBufferSizeInBytes(bufferSize)
+                    .setAudioPlaybackCaptureConfig(playback)
+                    .build();
+        } else {
+            record = new AudioRecord.Builder()
+                    .setAudioSource(MediaRecorder.AudioSource.MIC)
+                    .setAudioFormat(pcm)
+                    .setBufferSizeInBytes(bufferSize)
+                    .build();
+        }
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            record.release();
+            Log.e(TAG, "AudioRecord failed to initialize");
+            return null;
+        }
+
+        MediaFormat format = MediaFormat.createAudioFormat(
+                MediaFormat.MIMETYPE_AUDIO_AAC, SAMPLE_RATE, CHANNEL_COUNT);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE,
+                MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, BITRATE);
+        format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, CHUNK_BYTES);
+
+        MediaCodec codec;
+        try {
+            codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+        } catch (IOException | RuntimeException e) {
+            record.release();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        return new AudioEncoder(record, codec);
+    }
+
+    void start(MuxerSink sink, FailureListener failureListener) {
+        this.sink = sink;
+        this.failureListener = failureListener;
+        codec.start();
+        audioRecord.startRecording();
+        running = true;
+        thread = new Thread(this, "AudioEncoder");
+        thread.start();
+    }
+
+    /**
+     * Stops reading, signals end of stream and waits for the last samples to reach the muxer.
+     */
+    void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        try {
+            while (running) {
+                feedInput(false);
+                drainOutput(false);
+            }
+            for (int i = 0; i < MAX_EOS_ATTEMPTS && !feedInput(true); i++) {
+                drainOutput(false);
+            }
+            drainOutput(true);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Audio capture failed", e);
+            if (track < 0) {
+                // Otherwise the muxer would wait for this track forever and drop all video
+                sink.abandonTrack();
+            }
+            if (running && failureListener != null) {
+                failureListener.onAudioFailed(e);
+            }
+        } finally {
+            release();
+        }
+    }
+
+    private boolean feedInput(boolean endOfStream) {
+        int index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+        if (index < 0) {
+            return false;
+        }
+        if (endOfStream) {
+            codec.queueInputBuffer(index, 0, 0, ptsTracker.nextPtsUs(0),
+                    MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            return true;
+        }
+
+        ByteBuffer input = codec.getInputBuffer(index);
+        int read = input == null ? 0
+                : audioRecord.read(input, Math.min(input.remaining(), CHUNK_BYTES));
+        if (read == AudioRecord.ERROR_DEAD_OBJECT) {
+            throw new IllegalStateException("AudioRecord died");
+        }
+        if (read < 0) {
+            Log.e(TAG, "AudioRecord read error " + read);
+            read = 0;
+        }
+        int frames = read / BYTES_PER_FRAME;
+        updateClock(frames);
+        codec.queueInputBuffer(index, 0, read, ptsTracker.nextPtsUs(frames), 0);
+        return true;
+    }
+
+    private void updateClock(int frames) {
+        long framesRead = ptsTracker.getFramesRead();
+        if (framesRead >= nextTimestampFrame
+                && audioRecord.getTimestamp(timestamp, AudioTimestamp.TIMEBASE_MONOTONIC)
+                == AudioRecord.SUCCESS) {
+            ptsTracker.onTimestamp(timestamp.framePosition, timestamp.nanoTime);
+            nextTimestampFrame = framesRead + TIMESTAMP_INTERVAL_FRAMES;
+        }
+        ptsTracker.anchorIfNeeded(frames, System.nanoTime());
+    }
+
+    private void drainOutput(boolean untilEndOfStream) {
+        int attempts = 0;
+        while (true) {
+            int index = codec.dequeueOutputBuffer(info, untilEndOfStream ? DEQUEUE_TIMEOUT_US : 0);
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!untilEndOfStream || ++attempts >= MAX_EOS_ATTEMPTS) {
+                    return;
+                }
+                continue;
+            }
+            if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                track = sink.addTrack(codec.getOutputFormat());
+                continue;
+            }
+            if (index < 0) {
+                continue;
+            }
+
+            if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                info.size = 0;
+            }
+            if (info.size > 0 && track >= 0) {
+                ByteBuffer output = codec.getOutputBuffer(index);
+                if (output != null) {
+                    output.position(info.offset);
+                    output.limit(info.offset + info.size);
+                    sink.writeSample(track, output, info);
+                }
+            }
+            codec.releaseOutputBuffer(index, false);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                return;
+            }
+        }
+    }
+
+    void release() {
+        try {
+            audioRecord.stop();
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Error stopping AudioRecord", e);
+        }
+        audioRecord.release();
+        try {
+            codec.stop();
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Error stopping audio codec", e);
+        }
+        codec.release();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.globally_draggable_widget.record;
+
+/**
+ * Derives presentation timestamps for captured audio from the number of frames read, so
+ * timestamps advance exactly with the audio clock and are immune to read jitter. The
+ * mapping onto the monotonic clock that video uses is refreshed from AudioRecord
+ * timestamps and corrected by a bounded slew, which keeps the output strictly increasing
+ * while cancelling long-term drift between the audio and system clocks.
+ */
+public class AudioPtsTracker {
+    /** Largest correction applied per timestamp update, in microseconds. */
+    static final long MAX_SLEW_US = 1000;
+
+    private final int sampleRate;
+    private long framesRead;
+    // Monotonic time of audio frame 0, in microseconds
+    private long anchorUs;
+    private boolean anchored;
+    private long lastPtsUs = Long.MIN_VALUE;
+
+    public AudioPtsTracker(int sampleRate) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("sampleRate must be positive");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Feeds a device timestamp: audio frame {@code framePosition} was presented at
+     * monotonic time {@code nanoTime}.
+     */
+    public void onTimestamp(long framePosition, long nanoTime) {
+        long measuredAnchorUs = nanoTime / 1000 - framesToUs(framePosition);
+        if (!anchored) {
+            anchorUs = measuredAnchorUs;
+            anchored = true;
+            return;
+        }
+        long error = measuredAnchorUs - anchorUs;
+        anchorUs += Math.max(-MAX_SLEW_US, Math.min(MAX_SLEW_US, error));
+    }
+
+    /**
+     * Anchors the clock when the device provides no timestamps: the chunk of
+     * {@code frames} just read ended at monotonic time {@code nanoTime}.
+     */
+    public void anchorIfNeeded(int frames, long nanoTime) {
+        if (!anchored) {
+            anchorUs = nanoTime / 1000 - framesToUs(framesRead + frames);
+            anchored = true;
+        }
+    }
+
+    /**
+     * Returns the timestamp of a chunk of {@code frames} frames and advances past it.
+     */
+    public long nextPtsUs(int frames) {
+        long ptsUs = anchorUs + framesToUs(framesRead);
+        if (ptsUs <= lastPtsUs) {
+            ptsUs = lastPtsUs + 1;
+        }
+        lastPtsUs = ptsUs;
+        framesRead += frames;
+        return ptsUs;
+    }
+
+    public long getFramesRead() {
+        return framesRead;
+    }
+
+    private long framesToUs(long frames) {
+        return frames * 1_000_000L / sampleRate;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.globally_draggable_widget.record;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size ring of encoded frames in a single direct buffer. Writing never allocates:
+ * frames are copied in and the oldest ones are evicted to make room, to stay under the
+ * frame count, or to stay within the time window. Each frame is stored contiguously,
+ * so a frame that does not fit before the end of the buffer starts over at offset zero.
+ * Not thread-safe.
+ */
+public class EncodedFrameRing {
+    /** Same value as {@code MediaCodec.BUFFER_FLAG_KEY_FRAME}. */
+    public static final int FLAG_KEY_FRAME = 1;
+
+    public interface Visitor {
+        /**
+         * @param frame the frame's bytes between position and limit; only valid during
+         *              the call. It is a view of the whole ring, so the position is the
+         *              frame's offset from the buffer's start, which consumers that
+         *              address the buffer natively (e.g. {@code MediaMuxer}) must pass on
+         */
+        void onFrame(ByteBuffer frame, long ptsUs, int flags) throws IOException;
+    }
+
+    private final ByteBuffer data;
+    private final ByteBuffer readView;
+    private final int capacity;
+    private final long windowUs;
+    private final long[] ptsUs;
+    private final int[] offsets;
+    private final int[] sizes;
+    private final int[] flags;
+    private int head;
+    private int count;
+    private int writePos;
+    private long bytesUsed;
+    private long droppedFrames;
+
+    /**
+     * @param capacityBytes size of the direct buffer, allocated once
+     * @param maxFrames     most frames held at once
+     * @param windowUs      oldest frames are evicted once they fall this far behind the newest
+     */
+    public EncodedFrameRing(int capacityBytes, int maxFrames, long windowUs) {
+        if (capacityBytes <= 0 || maxFrames <= 0 || windowUs <= 0) {
+            throw new IllegalArgumentException("Ring limits must be positive");
+        }
+        data = ByteBuffer.allocateDirect(capacityBytes);
+        readView = data.duplicate();
+        capacity = capacityBytes;
+        this.windowUs = windowUs;
+        ptsUs = new long[maxFrames];
+        offsets = new int[maxFrames];
+        sizes = new int[maxFrames];
+        flags = new int[maxFrames];
+    }
+
+    /**
+     * Copies the bytes between {@code frame}'s position and limit into the ring; the
+     * source position is left unchanged. Returns false if the frame is larger than the
+     * whole ring and was dropped.
+     */
+    public boolean write(ByteBuffer frame, long framePtsUs, int frameFlags) {
+        int size = frame.remaining();
+        if (size > capacity) {
+            droppedFrames++;
+            return false;
+        }
+        if (count == offsets.length) {
+            evictOldest();
+        }
+        int start = reserve(size);
+
+        int srcPosition = frame.position();
+        data.limit(start + size);
+        data.position(start);
+        data.put(frame);
+        frame.position(srcPosition);
+
+        int slot = (head + count) % offsets.length;
+        ptsUs[slot] = framePtsUs;
+        offsets[slot] = start;
+        sizes[slot] = size;
+        flags[slot] = frameFlags;
+        count++;
+        writePos = start + size;
+        bytesUsed += size;
+
+        while (count > 1 && framePtsUs - ptsUs[head] > windowUs) {
+            evictOldest();
+        }
+        return true;
+    }
+
+    /** Evicts the oldest frames until {@code size} contiguous bytes are free. */
+    private int reserve(int size) {
+        while (true) {
+            if (count == 0) {
+                writePos = 0;
+                return 0;
+            }
+            int headOffset = offsets[head];
+            if (headOffset < writePos) {
+                // Live frames sit in [headOffset, writePos): free space at both ends
+                if (capacity - writePos >= size) {
+                    return writePos;
+                }
+                if (headOffset >= size) {
+                    return 0;
+                }
+            } else if (headOffset - writePos >= size) {
+                // Wrapped: the only free space is the gap before the oldest frame
+                return writePos;
+            }
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        bytesUsed -= sizes[head];
+        head = (head + 1) % offsets.length;
+        count--;
+    }
+
+    /**
+     * Visits frames oldest first, starting at the oldest key frame so the output decodes
+     * on its own. Returns the number of frames visited.
+     */
+    public int forEachFromKeyFrame(Visitor visitor) throws IOException {
+        int first = oldestKeyFrame();
+        if (first < 0) {
+            return 0;
+        }
+        for (int i = first; i < count; i++) {
+            int slot = (head + i) % offsets.length;
+            readView.limit(offsets[slot] + sizes[slot]);
+            readView.position(offsets[slot]);
+            visitor.onFrame(readView, ptsUs[slot], flags[slot]);
+        }
+        return count - first;
+    }
+
+    /** Index of the oldest key frame counted from the oldest frame, or -1. */
+    private int oldestKeyFrame() {
+        for (int i = 0; i < count; i++) {
+            if ((flags[(head + i) % offsets.length] & FLAG_KEY_FRAME) != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean hasKeyFrame() {
+        return oldestKeyFrame() >= 0;
+    }
+
+    /** Time span from the oldest key frame to the newest frame. */
+    public long getBufferedDurationUs() {
+        int first = oldestKeyFrame();
+        if (first < 0) {
+            return 0;
+        }
+        int newest = (head + count - 1) % offsets.length;
+        return ptsUs[newest] - ptsUs[(head + first) % offsets.length];
+    }
+
+    public void clear() {
+        head = 0;
+        count = 0;
+        writePos = 0;
+        bytesUsed = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getCapacityBytes() {
+        return capacity;
+    }
+
+    public long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+}
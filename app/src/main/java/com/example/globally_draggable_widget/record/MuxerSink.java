@@ -0,0 +1,103 @@
+package com.example.globally_draggable_widget.record;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Shares one {@link MediaMuxer} between the video and audio encoders, which drain on
+ * different threads. The muxer starts once every expected track has been added; samples
+ * that arrive earlier are dropped. A track whose source fails before adding it can be
+ * abandoned, so the others still get written.
+ */
+class MuxerSink {
+    private static final String TAG = "MuxerSink";
+
+    private final MediaMuxer muxer;
+    private int expectedTracks;
+    private final Runnable onStarted;
+    private int addedTracks;
+    private boolean started;
+    private boolean stopped;
+
+    MuxerSink(MediaMuxer muxer, int expectedTracks, Runnable onStarted) {
+        this.muxer = muxer;
+        this.expectedTracks = expectedTracks;
+        this.onStarted = onStarted;
+    }
+
+    int addTrack(MediaFormat format) {
+        boolean startedNow;
+        int track;
+        synchronized (this) {
+            track = muxer.addTrack(format);
+            startedNow = ++addedTracks == expectedTracks;
+            if (startedNow) {
+                muxer.start();
+                started = true;
+                Log.d(TAG, "Muxer started with " + addedTracks + " tracks");
+            }
+        }
+        if (startedNow && onStarted != null) {
+            onStarted.run();
+        }
+        return track;
+    }
+
+    /**
+     * Stops waiting for a track that was never added, e.g. because its source failed, and
+     * starts the muxer if every remaining track is already in.
+     */
+    void abandonTrack() {
+        boolean startedNow;
+        synchronized (this) {
+            if (started || stopped) {
+                return;
+            }
+            expectedTracks--;
+            startedNow = addedTracks > 0 && addedTracks == expectedTracks;
+            if (startedNow) {
+                muxer.start();
+                started = true;
+                Log.d(TAG, "Muxer started with " + addedTracks
+                        + " tracks after a track was abandoned");
+            }
+        }
+        if (startedNow && onStarted != null) {
+            onStarted.run();
+        }
+    }
+
+    synchronized boolean isStarted() {
+        return started;
+    }
+
+    synchronized void writeSample(int track, ByteBuffer data, MediaCodec.BufferInfo info) {
+        if (started && !stopped) {
+            muxer.writeSampleData(track, data, info);
+        }
+    }
+
+    /**
+     * Finalizes the file. Returns false when the muxer never started, i.e. nothing was written.
+     */
+    synchronized boolean stop() {
+        if (stopped) {
+            return false;
+        }
+        stopped = true;
+        if (!started) {
+            return false;
+        }
+        muxer.stop();
+        return true;
+    }
+
+    synchronized void release() {
+        stopped = true;
+        muxer.release();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.globally_draggable_widget.record;
+
+import android.media.MediaFormat;
+
+/**
+ * Encoder settings for a screen recording.
+ */
+public class RecordingConfig {
+    public static final String MIME_AVC = MediaFormat.MIMETYPE_VIDEO_AVC;
+    public static final String MIME_HEVC = MediaFormat.MIMETYPE_VIDEO_HEVC;
+
+    private static final int KEY_FRAME_INTERVAL_SEC = 1;
+
+    public enum AudioSource {
+        NONE,
+        MIC,
+        /** Playback capture on API 29+, microphone on older releases. */
+        INTERNAL
+    }
+
+    private final String mimeType;
+    private final int bitrate;
+    private final int frameRate;
+    private final float scale;
+    private final AudioSource audioSource;
+
+    /**
+     * @param mimeType  {@link #MIME_AVC} or {@link #MIME_HEVC}
+     * @param bitrate   target bitrate in bits per second
+     * @param frameRate maximum frames per second fed to the encoder
+     * @param scale     output size relative to the screen, in (0, 1]
+     */
+    public RecordingConfig(String mimeType, int bitrate, int frameRate, float scale) {
+        this(mimeType, bitrate, frameRate, scale, AudioSource.NONE);
+    }
+
+    public RecordingConfig(String mimeType, int bitrate, int frameRate, float scale,
+                           AudioSource audioSource) {
+        if (bitrate <= 0 || frameRate <= 0 || scale <= 0f || scale > 1f) {
+            throw new IllegalArgumentException("Invalid recording config");
+        }
+        this.mimeType = mimeType;
+        this.bitrate = bitrate;
+        this.frameRate = frameRate;
+        this.scale = scale;
+        this.audioSource = audioSource;
+    }
+
+    public static RecordingConfig defaults() {
+        return new RecordingConfig(MIME_AVC, 8_000_000, 30, 1f, AudioSource.INTERNAL);
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public AudioSource getAudioSource() {
+        return audioSource;
+    }
+
+    public int getKeyFrameIntervalSec() {
+        return KEY_FRAME_INTERVAL_SEC;
+    }
+
+    /**
+     * Scaled dimension rounded down to a multiple of 16, which every hardware encoder accepts.
+     */
+    public int scaleDimension(int screenDimension) {
+        int scaled = Math.round(screenDimension * scale);
+        return Math.max(16, scaled & ~15);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.globally_draggable_widget.record;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.media.MediaMuxer;
+import android.media.MediaScannerConnection;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * An MP4 in Movies/ScreenRecordings that a {@link MediaMuxer} writes into. On API 29+ it is
+ * a pending MediaStore entry, hidden until {@link #publish()}; older releases write the
+ * file directly and scan it afterwards.
+ */
+class RecordingOutput {
+    private static final String TAG = "RecordingOutput";
+    private static final String MIME_TYPE = "video/mp4";
+
+    private final Context context;
+    private ParcelFileDescriptor outputFd;
+    private Uri outputUri;
+    private File outputFile;
+
+    RecordingOutput(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    MediaMuxer open(String prefix) throws IOException {
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss",
+                Locale.getDefault()).format(new Date());
+        String fileName = prefix + "_" + timeStamp + ".mp4";
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            ContentValues values = new ContentValues();
+            values.put(MediaStore.Video.Media.DISPLAY_NAME, fileName);
+            values.put(MediaStore.Video.Media.MIME_TYPE, MIME_TYPE);
+            values.put(MediaStore.Video.Media.RELATIVE_PATH, "Movies/ScreenRecordings");
+            values.put(MediaStore.Video.Media.IS_PENDING, 1);
+
+            ContentResolver resolver = context.getContentResolver();
+            outputUri = resolver.insert(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, values);
+            if (outputUri == null) {
+                throw new IOException("Failed to create MediaStore entry");
+            }
+            outputFd = resolver.openFileDescriptor(outputUri, "rw");
+            if (outputFd == null) {
+                throw new IOException("Failed to open " + outputUri);
+            }
+            return new MediaMuxer(outputFd.getFileDescriptor(),
+                    MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        }
+
+        File dir = new File(Environment.getExternalStoragePublicDirectory(
+                Environment.DIRECTORY_MOVIES), "ScreenRecordings");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        outputFile = new File(dir, fileName);
+        return new MediaMuxer(outputFile.getAbsolutePath(),
+                MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    }
+
+    /** Closes the descriptor the muxer wrote through; call after releasing the muxer. */
+    void close() {
+        if (outputFd != null) {
+            try {
+                outputFd.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing output", e);
+            }
+            outputFd = null;
+        }
+    }
+
+    Uri publish() {
+        if (outputUri != null) {
+            ContentValues values = new ContentValues();
+            values.put(MediaStore.Video.Media.IS_PENDING, 0);
+            context.getContentResolver().update(outputUri, values, null, null);
+            return outputUri;
+        }
+        MediaScannerConnection.scanFile(context,
+                new String[]{outputFile.getAbsolutePath()}, new String[]{MIME_TYPE}, null);
+        return Uri.fromFile(outputFile);
+    }
+
+    void discard() {
+        if (outputUri != null) {
+            context.getContentResolver().delete(outputUri, null, null);
+            outputUri = null;
+        }
+        if (outputFile != null) {
+            outputFile.delete();
+            outputFile = null;
+        }
+    }
+}
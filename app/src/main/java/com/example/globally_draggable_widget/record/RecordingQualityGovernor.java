@@ -0,0 +1,122 @@
+package com.example.globally_draggable_widget.record;
+
+/**
+ * Picks a recording quality level from device pressure. Levels form a ladder from full
+ * quality down to a low bitrate fallback. Only the bitrate changes: it is the one video
+ * setting codecs accept while running. The frame rate cap is read when the codec is
+ * configured, and a muxed track keeps its size, so neither is part of the ladder.
+ * <p>
+ * The thermal status sets a floor the level can't recover past. Encoder backlog or
+ * dropped frames step down one level per tick; after a step down, the next
+ * {@link #COOLDOWN_TICKS} ticks are ignored so the queue can drain. The level steps back
+ * up one at a time only after {@link #RECOVER_TICKS} calm ticks in a row.
+ * Not thread-safe.
+ */
+public class RecordingQualityGovernor {
+    /** Same values as the {@code PowerManager.THERMAL_STATUS_*} constants. */
+    public static final int THERMAL_NONE = 0;
+    public static final int THERMAL_LIGHT = 1;
+    public static final int THERMAL_MODERATE = 2;
+    public static final int THERMAL_SEVERE = 3;
+    public static final int THERMAL_CRITICAL = 4;
+    public static final int THERMAL_EMERGENCY = 5;
+    public static final int THERMAL_SHUTDOWN = 6;
+
+    /** Encoder lag beyond this many frame intervals counts as a backlog. */
+    static final int LAG_FRAMES = 3;
+    static final int COOLDOWN_TICKS = 2;
+    static final int RECOVER_TICKS = 5;
+
+    public static final class Step {
+        private final float bitrateScale;
+
+        Step(float bitrateScale) {
+            this.bitrateScale = bitrateScale;
+        }
+
+        public int bitrate(RecordingConfig config) {
+            return Math.round(config.getBitrate() * bitrateScale);
+        }
+    }
+
+    static final Step[] LADDER = {
+            new Step(1f),
+            new Step(0.75f),
+            new Step(0.5f),
+            new Step(0.4f),
+            new Step(0.3f),
+    };
+
+    private final long lagThresholdMs;
+    private int level;
+    private int calmTicks;
+    private int cooldownTicks;
+
+    public RecordingQualityGovernor(int frameRate) {
+        if (frameRate <= 0) {
+            throw new IllegalArgumentException("frameRate must be positive: " + frameRate);
+        }
+        lagThresholdMs = LAG_FRAMES * 1000L / frameRate;
+    }
+
+    /**
+     * Feeds one tick of measurements. Returns true when the level changed.
+     *
+     * @param thermalStatus  current {@code THERMAL_*} status
+     * @param encoderLagMs   worst delay between a frame's capture and its encoded output
+     *                       since the previous tick
+     * @param droppedFrames  frames lost since the previous tick; frames the recorder
+     *                       discards on purpose, e.g. before the first key frame, are
+     *                       not pressure and must not be counted
+     */
+    public boolean update(int thermalStatus, long encoderLagMs, long droppedFrames) {
+        int floor = thermalFloor(thermalStatus);
+        int target = level;
+        boolean pressure = encoderLagMs > lagThresholdMs || droppedFrames > 0;
+
+        if (cooldownTicks > 0) {
+            cooldownTicks--;
+            calmTicks = 0;
+        } else if (pressure) {
+            target = level + 1;
+            calmTicks = 0;
+        } else if (++calmTicks >= RECOVER_TICKS) {
+            target = level - 1;
+            calmTicks = 0;
+        }
+        target = Math.min(LADDER.length - 1, Math.max(floor, target));
+
+        if (target == level) {
+            return false;
+        }
+        if (target > level) {
+            cooldownTicks = COOLDOWN_TICKS;
+        }
+        calmTicks = 0;
+        level = target;
+        return true;
+    }
+
+    static int thermalFloor(int thermalStatus) {
+        if (thermalStatus >= THERMAL_CRITICAL) {
+            return LADDER.length - 1;
+        } else if (thermalStatus == THERMAL_SEVERE) {
+            return 3;
+        } else if (thermalStatus == THERMAL_MODERATE) {
+            return 1;
+        }
+        return 0;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public Step getStep() {
+        return LADDER[level];
+    }
+
+    public long getLagThresholdMs() {
+        return lagThresholdMs;
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.globally_draggable_widget.record;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+
+import com.example.globally_draggable_widget.capture.CaptureSession;
+import com.example.globally_draggable_widget.metrics.Counter;
+import com.example.globally_draggable_widget.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Keeps the last few seconds of the screen as encoded video in an
+ * {@link EncodedFrameRing}, so a tap can save what already happened. The encoder runs
+ * continuously off the capture session's display; nothing touches storage until
+ * {@link #save(Listener)}.
+ * <p>
+ * Saving muxes on the replay thread, which also drains the encoder: the ring is not
+ * thread-safe, and writing on would evict the frames being saved. The encoder output
+ * stalls for the length of the save, and the display frames of that span are lost.
+ */
+public class ReplayRecorder {
+    private static final String TAG = "ReplayRecorder";
+    public static final int DEFAULT_WINDOW_SEC = 15;
+    private static final int MAX_RING_BYTES = 48 * 1024 * 1024;
+
+    public interface Listener {
+        void onReplaySaved(Uri uri);
+
+        void onReplayFailed(Exception e);
+    }
+
+    public interface ErrorListener {
+        /**
+         * The encoder failed and the replay can't continue. Called on the main thread; the
+         * owner should stop the replay through its usual path, which restores the display.
+         */
+        void onReplayError(ReplayRecorder recorder, Exception e);
+    }
+
+    private final Context context;
+    private final CaptureSession session;
+    private final RecordingConfig config;
+    private final int windowSec;
+    private final ErrorListener errorListener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Frames too large for the whole ring, plus the frames a save stalls the encoder for
+    // (estimated from its duration); normal eviction is not counted
+    private final Counter framesDropped =
+            MetricsRegistry.getInstance().counter("replay.frames_dropped");
+
+    private HandlerThread thread;
+    private Handler handler;
+    private MediaCodec encoder;
+    private Surface inputSurface;
+    // Only touched on the replay thread once started
+    private EncodedFrameRing ring;
+    private MediaFormat outputFormat;
+    private volatile boolean active;
+
+    public ReplayRecorder(Context context, CaptureSession session, RecordingConfig config,
+                          int windowSec, ErrorListener errorListener) {
+        this.context = context.getApplicationContext();
+        this.session = session;
+        this.config = config;
+        this.windowSec = windowSec;
+        this.errorListener = errorListener;
+    }
+
+    /**
+     * Half-resolution AVC at a bitrate that keeps a 15 second window around 8 MB.
+     */
+    public static RecordingConfig defaultConfig() {
+        return new RecordingConfig(RecordingConfig.MIME_AVC, 4_000_000, 30, 0.5f);
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void start() throws IOException {
+        int width = config.scaleDimension(session.getWidth());
+        int height = config.scaleDimension(session.getHeight());
+        String mimeType = ScreenRecorder.resolveMimeType(config.getMimeType(), width, height);
+
+        // Bitrate is an average; leave headroom for key frames and busy scenes
+        long windowBytes = (long) config.getBitrate() / 8 * windowSec * 3 / 2;
+        ring = new EncodedFrameRing((int) Math.min(windowBytes, MAX_RING_BYTES),
+                config.getFrameRate() * windowSec * 2, windowSec * 1_000_000L);
+
+        thread = new HandlerThread("ReplayRecorder", Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+
+        try {
+            MediaFormat format = ScreenRecorder.createVideoFormat(mimeType, width, height,
+                    config);
+            encoder = MediaCodec.createEncoderByType(mimeType);
+            encoder.setCallback(encoderCallback, handler);
+            encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            inputSurface = encoder.createInputSurface();
+            encoder.start();
+        } catch (IOException | RuntimeException e) {
+            releaseEncoder();
+            thread.quitSafely();
+            ring = null;
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+
+        session.redirect(inputSurface, width, height);
+        active = true;
+        Log.d(TAG, "Replay " + width + "x" + height + ", " + windowSec + "s in "
+                + ring.getCapacityBytes() + " bytes");
+    }
+
+    private final MediaCodec.Callback encoderCallback = new MediaCodec.Callback() {
+        @Override
+        public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
+            // Input comes from the surface
+        }
+
+        @Override
+        public void onOutputBufferAvailable(@NonNull MediaCodec codec, int index,
+                                            @NonNull MediaCodec.BufferInfo info) {
+            // Codec specific data reaches the muxer through the output format
+            if (info.size > 0 && (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+                ByteBuffer data = codec.getOutputBuffer(index);
+                if (data != null) {
+                    data.position(info.offset);
+                    data.limit(info.offset + info.size);
+                    if (!ring.write(data, info.presentationTimeUs,
+                            info.flags & EncodedFrameRing.FLAG_KEY_FRAME)) {
+                        framesDropped.increment();
+                    }
+                }
+            }
+            codec.releaseOutputBuffer(index, false);
+        }
+
+        @Override
+        public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+            Log.e(TAG, "Encoder error", e);
+            mainHandler.post(() -> errorListener.onReplayError(ReplayRecorder.this, e));
+        }
+
+        @Override
+        public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
+            outputFormat = format;
+        }
+    };
+
+    /**
+     * Writes the buffered window to a new MP4. The replay keeps running afterwards, but
+     * frames are not captured while the file is written.
+     */
+    public void save(Listener listener) {
+        if (!active) {
+            listener.onReplayFailed(new IOException("Replay is not running"));
+            return;
+        }
+        handler.post(() -> {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                Uri uri = dump();
+                mainHandler.post(() -> listener.onReplaySaved(uri));
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error saving replay", e);
+                mainHandler.post(() -> listener.onReplayFailed(e));
+            } finally {
+                long stalledMs = SystemClock.elapsedRealtime() - start;
+                framesDropped.add(stalledMs * config.getFrameRate() / 1000);
+                Log.d(TAG, "Encoder output stalled " + stalledMs + "ms while saving");
+            }
+        });
+    }
+
+    private Uri dump() throws IOException {
+        if (ring == null) {
+            throw new IOException("Replay stopped");
+        }
+        if (outputFormat == null || !ring.hasKeyFrame()) {
+            throw new IOException("Nothing buffered yet");
+        }
+        RecordingOutput output = new RecordingOutput(context);
+        MediaMuxer muxer = null;
+        boolean saved = false;
+        try {
+            muxer = output.open("Replay");
+            int track = muxer.addTrack(outputFormat);
+            muxer.start();
+            MediaMuxer target = muxer;
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            int frames = ring.forEachFromKeyFrame((frame, ptsUs, flags) -> {
+                // The muxer reads from the buffer's base address plus the offset and ignores
+                // its position, and the frame is a view of the whole ring
+                info.set(frame.position(), frame.remaining(), ptsUs, flags);
+                target.writeSampleData(track, frame, info);
+            });
+            muxer.stop();
+            saved = true;
+            Log.d(TAG, "Saved " + frames + " frames, "
+                    + ring.getBufferedDurationUs() / 1000 + "ms");
+        } finally {
+            if (muxer != null) {
+                muxer.release();
+            }
+            output.close();
+            if (!saved) {
+                output.discard();
+            }
+        }
+        return output.publish();
+    }
+
+    public void stop() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        session.restore();
+        handler.post(() -> {
+            releaseEncoder();
+            ring = null;
+            thread.quitSafely();
+        });
+    }
+
+    private void releaseEncoder() {
+        if (encoder != null) {
+            try {
+                encoder.stop();
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error stopping encoder", e);
+            }
+            encoder.release();
+            encoder = null;
+        }
+        if (inputSurface != null) {
+            inputSurface.release();
+            inputSurface = null;
+        }
+    }
+}
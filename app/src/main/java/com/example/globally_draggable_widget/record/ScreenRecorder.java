@@ -0,0 +1,385 @@
+package com.example.globally_draggable_widget.record;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+
+import com.example.globally_draggable_widget.capture.CaptureSession;
+import com.example.globally_draggable_widget.metrics.Counter;
+import com.example.globally_draggable_widget.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Records the screen by pointing the capture session's {@code VirtualDisplay} at a
+ * {@link MediaCodec} input surface. Frames go from the compositor to the hardware encoder
+ * without touching the Java heap; encoded samples are written straight from the codec's
+ * output buffers into a {@link MediaMuxer}, alongside an optional AAC audio track.
+ * <p>
+ * While recording, a {@link RecordingQualityGovernor} checks the thermal status and the
+ * encoder's backlog once a second and trades bitrate for headroom.
+ */
+public class ScreenRecorder {
+    private static final String TAG = "ScreenRecorder";
+    private static final long EOS_TIMEOUT_MS = 2000;
+    private static final long GOVERNOR_INTERVAL_MS = 1000;
+
+    public interface Listener {
+        void onRecordingSaved(Uri uri);
+
+        void onRecordingFailed(Exception e);
+
+        /** Audio capture stopped; the recording continues with video only. */
+        void onAudioFailed(Exception e);
+    }
+
+    private final Context context;
+    private final CaptureSession session;
+    private final RecordingConfig config;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Counter framesWritten =
+            MetricsRegistry.getInstance().counter("recording.frames_written");
+    private final Counter framesDropped =
+            MetricsRegistry.getInstance().counter("recording.frames_dropped");
+    // Dropped on purpose: encoded before the muxer started or before the first key frame
+    private final Counter framesDiscarded =
+            MetricsRegistry.getInstance().counter("recording.frames_discarded");
+    private final Counter qualityChanges =
+            MetricsRegistry.getInstance().counter("recording.quality_changes");
+    private final Counter audioFailures =
+            MetricsRegistry.getInstance().counter("recording.audio_failures");
+
+    private HandlerThread thread;
+    private Handler handler;
+    private MediaCodec encoder;
+    private Surface inputSurface;
+    private MediaMuxer muxer;
+    private MuxerSink sink;
+    private AudioEncoder audioEncoder;
+    private RecordingOutput output;
+    private RecordingQualityGovernor governor;
+    // Only touched on the recorder thread once started
+    private int videoTrack = -1;
+    private long maxLagUs;
+    private long droppedSinceTick;
+    private boolean sawKeyFrame;
+    private boolean finished;
+    private volatile boolean recording;
+
+    public ScreenRecorder(Context context, CaptureSession session, RecordingConfig config,
+                          Listener listener) {
+        this.context = context.getApplicationContext();
+        this.session = session;
+        this.config = config;
+        this.listener = listener;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public void start() throws IOException {
+        int width = config.scaleDimension(session.getWidth());
+        int height = config.scaleDimension(session.getHeight());
+        String mimeType = resolveMimeType(config.getMimeType(), width, height);
+
+        thread = new HandlerThread("ScreenRecorder", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+
+        try {
+            output = new RecordingOutput(context);
+            muxer = output.open("Recording");
+
+            MediaFormat format = createVideoFormat(mimeType, width, height, config);
+            encoder = MediaCodec.createEncoderByType(mimeType);
+            encoder.setCallback(encoderCallback, handler);
+            encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            inputSurface = encoder.createInputSurface();
+
+            audioEncoder = AudioEncoder.create(context, session.getMediaProjection(),
+                    config.getAudioSource());
+            sink = new MuxerSink(muxer, audioEncoder != null ? 2 : 1, this::requestKeyFrame);
+
+            encoder.start();
+            if (audioEncoder != null) {
+                audioEncoder.start(sink, this::onAudioFailed);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (audioEncoder != null) {
+                audioEncoder.release();
+                audioEncoder = null;
+            }
+            releaseResources();
+            discardOutput();
+            thread.quitSafely();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+
+        session.redirect(inputSurface, width, height);
+        recording = true;
+        governor = new RecordingQualityGovernor(config.getFrameRate());
+        handler.postDelayed(governorTick, GOVERNOR_INTERVAL_MS);
+        Log.d(TAG, "Recording " + mimeType + " " + width + "x" + height + " @"
+                + config.getFrameRate() + "fps " + config.getBitrate() + "bps, audio "
+                + (audioEncoder != null ? config.getAudioSource() : "off"));
+    }
+
+    public void stop() {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+        session.restore();
+        try {
+            encoder.signalEndOfInputStream();
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Error signalling end of stream", e);
+        }
+        // Some encoders never emit EOS once the surface is detached
+        handler.postDelayed(() -> finish(null), EOS_TIMEOUT_MS);
+    }
+
+    private final MediaCodec.Callback encoderCallback = new MediaCodec.Callback() {
+        @Override
+        public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
+            // Input comes from the surface
+        }
+
+        @Override
+        public void onOutputBufferAvailable(@NonNull MediaCodec codec, int index,
+                                            @NonNull MediaCodec.BufferInfo info) {
+            if (finished) {
+                return;
+            }
+            if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                // Codec specific data already reached the muxer through the output format
+                info.size = 0;
+            }
+            if (info.size > 0) {
+                // Surface frames carry System.nanoTime() timestamps
+                long lagUs = System.nanoTime() / 1000 - info.presentationTimeUs;
+                maxLagUs = Math.max(maxLagUs, lagUs);
+            }
+            if (info.size > 0 && sink.isStarted()) {
+                // Frames encoded while waiting for the audio track can't be decoded alone
+                sawKeyFrame |= (info.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+                ByteBuffer data = sawKeyFrame ? codec.getOutputBuffer(index) : null;
+                if (data != null) {
+                    data.position(info.offset);
+                    data.limit(info.offset + info.size);
+                    sink.writeSample(videoTrack, data, info);
+                    framesWritten.increment();
+                } else if (sawKeyFrame) {
+                    framesDropped.increment();
+                    droppedSinceTick++;
+                } else {
+                    framesDiscarded.increment();
+                }
+            } else if (info.size > 0) {
+                framesDiscarded.increment();
+            }
+            codec.releaseOutputBuffer(index, false);
+
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                finish(null);
+            }
+        }
+
+        @Override
+        public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+            Log.e(TAG, "Encoder error", e);
+            recording = false;
+            session.restore();
+            finish(e);
+        }
+
+        @Override
+        public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
+            if (videoTrack >= 0) {
+                Log.e(TAG, "Output format changed twice: " + format);
+                return;
+            }
+            videoTrack = sink.addTrack(format);
+        }
+    };
+
+    private final Runnable governorTick = new Runnable() {
+        @Override
+        public void run() {
+            if (finished || !recording) {
+                return;
+            }
+            boolean changed = governor.update(readThermalStatus(), maxLagUs / 1000,
+                    droppedSinceTick);
+            maxLagUs = 0;
+            droppedSinceTick = 0;
+            if (changed) {
+                applyQuality(governor.getLevel(), governor.getStep());
+            }
+            handler.postDelayed(this, GOVERNOR_INTERVAL_MS);
+        }
+    };
+
+    private int readThermalStatus() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return RecordingQualityGovernor.THERMAL_NONE;
+        }
+        PowerManager powerManager = context.getSystemService(PowerManager.class);
+        return powerManager != null ? powerManager.getCurrentThermalStatus()
+                : RecordingQualityGovernor.THERMAL_NONE;
+    }
+
+    private void applyQuality(int level, RecordingQualityGovernor.Step step) {
+        MediaCodec codec = encoder;
+        if (codec == null) {
+            return;
+        }
+        int bitrate = step.bitrate(config);
+        Bundle params = new Bundle();
+        params.putInt(MediaCodec.PARAMETER_KEY_VIDEO_BITRATE, bitrate);
+        try {
+            codec.setParameters(params);
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Error applying quality level " + level, e);
+            return;
+        }
+        qualityChanges.increment();
+        Log.d(TAG, "Quality level " + level + ": " + bitrate + "bps");
+    }
+
+    private void onAudioFailed(Exception e) {
+        audioFailures.increment();
+        mainHandler.post(() -> listener.onAudioFailed(e));
+    }
+
+    private void requestKeyFrame() {
+        MediaCodec codec = encoder;
+        if (codec == null) {
+            return;
+        }
+        Bundle params = new Bundle();
+        params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+        try {
+            codec.setParameters(params);
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Error requesting key frame", e);
+        }
+    }
+
+    private void finish(Exception error) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        handler.removeCallbacksAndMessages(null);
+
+        if (audioEncoder != null) {
+            audioEncoder.stop();
+            audioEncoder = null;
+        }
+
+        boolean saved = false;
+        try {
+            saved = sink.stop() && error == null;
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Error stopping muxer", e);
+            if (error == null) {
+                error = e;
+            }
+        }
+        releaseResources();
+
+        if (saved) {
+            Uri uri = publishOutput();
+            mainHandler.post(() -> listener.onRecordingSaved(uri));
+        } else {
+            discardOutput();
+            Exception failure = error != null ? error : new IOException("Nothing was recorded");
+            mainHandler.post(() -> listener.onRecordingFailed(failure));
+        }
+        thread.quitSafely();
+    }
+
+    private void releaseResources() {
+        if (encoder != null) {
+            try {
+                encoder.stop();
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error stopping encoder", e);
+            }
+            encoder.release();
+            encoder = null;
+        }
+        if (inputSurface != null) {
+            inputSurface.release();
+            inputSurface = null;
+        }
+        if (sink != null) {
+            sink.release();
+            sink = null;
+            muxer = null;
+        } else if (muxer != null) {
+            muxer.release();
+            muxer = null;
+        }
+        if (output != null) {
+            output.close();
+        }
+    }
+
+    private Uri publishOutput() {
+        return output.publish();
+    }
+
+    private void discardOutput() {
+        if (output != null) {
+            output.discard();
+        }
+    }
+
+    static MediaFormat createVideoFormat(String mimeType, int width, int height,
+                                         RecordingConfig config) {
+        MediaFormat format = MediaFormat.createVideoFormat(mimeType, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+                MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, config.getBitrate());
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, config.getFrameRate());
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, config.getKeyFrameIntervalSec());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // Let the codec drop compositor frames above the configured rate
+            format.setFloat(MediaFormat.KEY_MAX_FPS_TO_ENCODER, config.getFrameRate());
+        }
+        return format;
+    }
+
+    static String resolveMimeType(String requested, int width, int height) {
+        if (RecordingConfig.MIME_AVC.equals(requested)) {
+            return requested;
+        }
+        MediaFormat probe = MediaFormat.createVideoFormat(requested, width, height);
+        MediaCodecList codecs = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+        if (codecs.findEncoderForFormat(probe) == null) {
+            Log.d(TAG, requested + " encoder unavailable, falling back to AVC");
+            return RecordingConfig.MIME_AVC;
+        }
+        return requested;
+    }
+}
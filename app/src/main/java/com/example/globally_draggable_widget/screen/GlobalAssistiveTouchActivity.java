@@ -9,7 +9,6 @@ import android.os.Bundle;
 import android.provider.Settings;
 import android.widget.Toast;
 
-import androidx.activity.EdgeToEdge;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
@@ -17,7 +16,6 @@ import androidx.core.content.ContextCompat;
 
 import com.example.globally_draggable_widget.GlobalCaptureOverlayService;
 import com.example.globally_draggable_widget.GlobalScreenCaptureManager;
-import com.example.globally_draggable_widget.R;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -50,9 +48,8 @@ public class GlobalAssistiveTouchActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        EdgeToEdge.enable(this);
-        setContentView(R.layout.activity_global_assistive_touch);
-
+        // No content view: this activity only gathers permissions, starts the overlay
+        // service and moves to the back, so inflating a layout would only delay startup
         try {
             // Initialize the capture manager
             captureManager = new GlobalScreenCaptureManager(this);
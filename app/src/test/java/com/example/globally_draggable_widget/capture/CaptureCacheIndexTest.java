@@ -0,0 +1,104 @@
+package com.example.globally_draggable_widget.capture;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CaptureCacheIndexTest {
+
+    @Test
+    public void put_withinLimits_evictsNothing() {
+        CaptureCacheIndex index = new CaptureCacheIndex(1000, 10);
+        assertTrue(index.put("a", 100).isEmpty());
+        assertTrue(index.put("b", 200).isEmpty());
+        assertEquals(2, index.size());
+        assertEquals(300, index.getTotalBytes());
+    }
+
+    @Test
+    public void put_overCount_evictsLeastRecentlyUsed() {
+        CaptureCacheIndex index = new CaptureCacheIndex(1000, 2);
+        index.put("a", 10);
+        index.put("b", 10);
+        index.touch("a");
+        assertEquals(Collections.singletonList("b"), index.put("c", 10));
+        assertEquals(Arrays.asList("c", "a"), index.recent(10));
+    }
+
+    @Test
+    public void put_overBytes_evictsUntilUnderCap() {
+        CaptureCacheIndex index = new CaptureCacheIndex(1000, 100);
+        index.put("a", 400);
+        index.put("b", 400);
+        index.put("c", 100);
+        assertEquals(Arrays.asList("a", "b"), index.put("d", 700));
+        assertEquals(800, index.getTotalBytes());
+    }
+
+    @Test
+    public void put_entryLargerThanCap_isKept() {
+        CaptureCacheIndex index = new CaptureCacheIndex(1000, 100);
+        index.put("a", 100);
+        assertEquals(Collections.singletonList("a"), index.put("huge", 5000));
+        assertTrue(index.contains("huge"));
+        assertEquals(5000, index.getTotalBytes());
+    }
+
+    @Test
+    public void put_existingEntry_replacesSize() {
+        CaptureCacheIndex index = new CaptureCacheIndex(1000, 100);
+        index.put("a", 100);
+        index.put("a", 300);
+        assertEquals(1, index.size());
+        assertEquals(300, index.getTotalBytes());
+    }
+
+    @Test
+    public void putAllOlder_ranksDiskEntriesBehindIndexed() {
+        CaptureCacheIndex index = new CaptureCacheIndex(1000, 3);
+        index.put("new", 10);
+        LinkedHashMap<String, Long> disk = new LinkedHashMap<>();
+        disk.put("old1", 10L);
+        disk.put("old2", 10L);
+        disk.put("new", 10L);
+        disk.put("old3", 10L);
+        index.putAllOlder(disk);
+
+        assertEquals(4, index.size());
+        assertEquals(40, index.getTotalBytes());
+        assertEquals(Collections.singletonList("old1"), index.trim());
+        assertEquals(Arrays.asList("new", "old3", "old2"), index.recent(10));
+    }
+
+    @Test
+    public void setLimits_thenTrim_evictsDownToNewCap() {
+        CaptureCacheIndex index = new CaptureCacheIndex(1000, 10);
+        for (int i = 0; i < 5; i++) {
+            index.put("f" + i, 100);
+        }
+        index.setLimits(250, 10);
+        List<String> evicted = index.trim();
+        assertEquals(Arrays.asList("f0", "f1", "f2"), evicted);
+        assertEquals(200, index.getTotalBytes());
+    }
+
+    @Test
+    public void remove_updatesTotals() {
+        CaptureCacheIndex index = new CaptureCacheIndex(1000, 10);
+        index.put("a", 100);
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+        assertEquals(0, index.size());
+        assertEquals(0, index.getTotalBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNonPositiveLimits() {
+        new CaptureCacheIndex(0, 10);
+    }
+}
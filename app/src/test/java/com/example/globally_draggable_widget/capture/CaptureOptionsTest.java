@@ -0,0 +1,37 @@
+package com.example.globally_draggable_widget.capture;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CaptureOptionsTest {
+
+    @Test
+    public void withoutSkipDuplicates_hasNoScope() {
+        CaptureOptions options = CaptureOptions.auto();
+        assertFalse(options.isSkipDuplicates());
+        assertEquals(0, options.getDuplicateScope());
+        assertSame(options, options.withNewDuplicateScope());
+    }
+
+    @Test
+    public void minFrameTimeCopy_keepsScope() {
+        CaptureOptions options = CaptureOptions.burst();
+        CaptureOptions copy = options.withMinFrameTime(42);
+        assertTrue(copy.isSkipDuplicates());
+        assertEquals(options.getDuplicateScope(), copy.getDuplicateScope());
+        assertEquals(42, copy.getMinFrameTimeNanos());
+    }
+
+    @Test
+    public void newDuplicateScope_isDistinctAndKeepsSettings() {
+        CaptureOptions options = CaptureOptions.burst().withMinFrameTime(42);
+        CaptureOptions first = options.withNewDuplicateScope();
+        CaptureOptions second = options.withNewDuplicateScope();
+        assertTrue(first.isSkipDuplicates());
+        assertNotEquals(options.getDuplicateScope(), first.getDuplicateScope());
+        assertNotEquals(first.getDuplicateScope(), second.getDuplicateScope());
+        assertEquals(42, first.getMinFrameTimeNanos());
+        assertEquals(options.getDestination(), first.getDestination());
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.globally_draggable_widget.capture;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class CaptureRequestQueueTest {
+
+    /** Records started requests and lets the test finish them. */
+    private static class FakeWorker implements CaptureRequestQueue.Worker<String, String> {
+        final List<String> started = new ArrayList<>();
+        final List<CaptureRequestQueue.Request<String>> requests = new ArrayList<>();
+        int running;
+        int maxRunning;
+
+        @Override
+        public void start(String payload, CaptureRequestQueue.Request<String> request) {
+            started.add(payload);
+            requests.add(request);
+            running++;
+            maxRunning = Math.max(maxRunning, running);
+        }
+
+        /** Finishes the most recently started request. */
+        void finishNext(boolean success) {
+            int last = requests.size() - 1;
+            CaptureRequestQueue.Request<String> request = requests.get(last);
+            running--;
+            if (success) {
+                request.complete("done:" + started.get(last));
+            } else {
+                request.fail(new IllegalStateException("boom"));
+            }
+        }
+    }
+
+    private static Throwable failureOf(CompletableFuture<?> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("expected failure");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    @Test
+    public void submit_idle_startsImmediately() throws Exception {
+        FakeWorker worker = new FakeWorker();
+        CaptureRequestQueue<String, String> queue = new CaptureRequestQueue<>(2,
+                CaptureRequestQueue.OverflowPolicy.REJECT, worker);
+        CompletableFuture<String> future = queue.submit("a");
+        assertEquals(1, worker.started.size());
+        assertTrue(queue.isBusy());
+
+        worker.finishNext(true);
+        assertEquals("done:a", future.get());
+        assertFalse(queue.isBusy());
+    }
+
+    @Test
+    public void submit_whileBusy_runsOneAtATimeInOrder() throws Exception {
+        FakeWorker worker = new FakeWorker();
+        CaptureRequestQueue<String, String> queue = new CaptureRequestQueue<>(2,
+                CaptureRequestQueue.OverflowPolicy.REJECT, worker);
+        CompletableFuture<String> a = queue.submit("a");
+        CompletableFuture<String> b = queue.submit("b");
+        CompletableFuture<String> c = queue.submit("c");
+        assertEquals(2, queue.getPendingCount());
+
+        worker.finishNext(true);
+        worker.finishNext(false);
+        worker.finishNext(true);
+
+        assertEquals("done:a", a.get());
+        assertTrue(failureOf(b) instanceof IllegalStateException);
+        assertEquals("done:c", c.get());
+        assertEquals(1, worker.maxRunning);
+    }
+
+    @Test
+    public void reject_whenFull_failsNewRequest() throws Exception {
+        FakeWorker worker = new FakeWorker();
+        CaptureRequestQueue<String, String> queue = new CaptureRequestQueue<>(1,
+                CaptureRequestQueue.OverflowPolicy.REJECT, worker);
+        queue.submit("a");
+        CompletableFuture<String> b = queue.submit("b");
+        CompletableFuture<String> c = queue.submit("c");
+
+        assertTrue(failureOf(c) instanceof RejectedExecutionException);
+        assertFalse(b.isDone());
+        assertEquals(1, queue.getRejectedCount());
+    }
+
+    @Test
+    public void dropOldest_whenFull_replacesOldestWaiting() throws Exception {
+        FakeWorker worker = new FakeWorker();
+        CaptureRequestQueue<String, String> queue = new CaptureRequestQueue<>(1,
+                CaptureRequestQueue.OverflowPolicy.DROP_OLDEST, worker);
+        CompletableFuture<String> a = queue.submit("a");
+        CompletableFuture<String> b = queue.submit("b");
+        CompletableFuture<String> c = queue.submit("c");
+
+        assertTrue(failureOf(b) instanceof RejectedExecutionException);
+        assertFalse(a.isDone());
+        worker.finishNext(true);
+        worker.finishNext(true);
+        assertEquals("done:c", c.get());
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(2, worker.started.size());
+    }
+
+    @Test
+    public void dropOldest_withNoWaitingSlots_rejects() throws Exception {
+        FakeWorker worker = new FakeWorker();
+        CaptureRequestQueue<String, String> queue = new CaptureRequestQueue<>(0,
+                CaptureRequestQueue.OverflowPolicy.DROP_OLDEST, worker);
+        queue.submit("a");
+        assertTrue(failureOf(queue.submit("b")) instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void cancel_pending_neverStarts() {
+        FakeWorker worker = new FakeWorker();
+        CaptureRequestQueue<String, String> queue = new CaptureRequestQueue<>(2,
+                CaptureRequestQueue.OverflowPolicy.REJECT, worker);
+        queue.submit("a");
+        CompletableFuture<String> b = queue.submit("b");
+        queue.submit("c");
+
+        assertTrue(b.cancel(true));
+        assertEquals(1, queue.getPendingCount());
+        worker.finishNext(true);
+        assertEquals(Arrays.asList("a", "c"), worker.started);
+    }
+
+    @Test
+    public void cancel_running_isVisibleToWorkerAndKeepsSlot() {
+        FakeWorker worker = new FakeWorker();
+        CaptureRequestQueue<String, String> queue = new CaptureRequestQueue<>(2,
+                CaptureRequestQueue.OverflowPolicy.REJECT, worker);
+        CompletableFuture<String> a = queue.submit("a");
+        queue.submit("b");
+
+        a.cancel(true);
+        assertTrue(worker.requests.get(0).isCancelled());
+        // The next request waits until the worker acknowledges
+        assertEquals(1, worker.started.size());
+        worker.finishNext(false);
+        assertEquals(2, worker.started.size());
+        assertTrue(a.isCancelled());
+    }
+
+    @Test
+    public void rapidTaps_neverRunInParallel() {
+        FakeWorker worker = new FakeWorker();
+        CaptureRequestQueue<String, String> queue = new CaptureRequestQueue<>(1,
+                CaptureRequestQueue.OverflowPolicy.DROP_OLDEST, worker);
+        for (int i = 0; i < 50; i++) {
+            queue.submit("tap" + i);
+        }
+        while (worker.running > 0) {
+            worker.finishNext(true);
+        }
+        assertEquals(1, worker.maxRunning);
+        assertEquals(Arrays.asList("tap0", "tap49"), worker.started);
+        assertEquals(48, queue.getDroppedCount());
+    }
+}
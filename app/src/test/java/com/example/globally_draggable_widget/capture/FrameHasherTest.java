@@ -0,0 +1,112 @@
+package com.example.globally_draggable_widget.capture;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameHasherTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 2400;
+    private static final int ROW_STRIDE = WIDTH * 4 + 64;
+
+    private final FrameHasher hasher = new FrameHasher(FrameHasher.DEFAULT_TILE_SIZE);
+
+    private static ByteBuffer randomFrame(long seed, int rowStride) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(rowStride * HEIGHT);
+        Random random = new Random(seed);
+        byte[] row = new byte[rowStride];
+        for (int y = 0; y < HEIGHT; y++) {
+            random.nextBytes(row);
+            buffer.put(row);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private long[] hash(ByteBuffer frame, int pixelStride, int rowStride) {
+        long[] out = new long[hasher.tileCount(WIDTH, HEIGHT)];
+        hasher.hash(frame, WIDTH, HEIGHT, pixelStride, rowStride, out);
+        return out;
+    }
+
+    @Test
+    public void tileCount_roundsPartialTilesUp() {
+        // 1080 / 64 = 16.9 -> 17, 2400 / 64 = 37.5 -> 38
+        assertEquals(17 * 38, hasher.tileCount(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void identicalFrames_haveIdenticalHashes() {
+        long[] a = hash(randomFrame(1, ROW_STRIDE), 4, ROW_STRIDE);
+        long[] b = hash(randomFrame(1, ROW_STRIDE), 4, ROW_STRIDE);
+        assertEquals(0, FrameHasher.countChanged(a, b, a.length));
+    }
+
+    @Test
+    public void singlePixelChange_changesExactlyOneTile() {
+        ByteBuffer frame = randomFrame(2, ROW_STRIDE);
+        long[] before = hash(frame, 4, ROW_STRIDE);
+
+        int x = 1079;
+        int y = 2399;
+        int offset = y * ROW_STRIDE + x * 4 + 1;
+        frame.put(offset, (byte) (frame.get(offset) ^ 1));
+        long[] after = hash(frame, 4, ROW_STRIDE);
+
+        assertEquals(1, FrameHasher.countChanged(before, after, before.length));
+        int tile = (y / 64) * 17 + x / 64;
+        assertNotEquals(before[tile], after[tile]);
+    }
+
+    @Test
+    public void rowPadding_isIgnored() {
+        ByteBuffer frame = randomFrame(3, ROW_STRIDE);
+        long[] before = hash(frame, 4, ROW_STRIDE);
+        for (int y = 0; y < HEIGHT; y++) {
+            frame.put(y * ROW_STRIDE + WIDTH * 4 + 5, (byte) 0x5A);
+        }
+        long[] after = hash(frame, 4, ROW_STRIDE);
+        assertEquals(0, FrameHasher.countChanged(before, after, before.length));
+    }
+
+    @Test
+    public void widePixelStride_ignoresBytesBetweenPixels() {
+        ByteBuffer wide = randomFrame(4, WIDTH * 8);
+        long[] before = hash(wide, 8, WIDTH * 8);
+        for (int y = 0; y < HEIGHT; y += 7) {
+            for (int x = 0; x < WIDTH; x += 3) {
+                wide.putInt(y * WIDTH * 8 + x * 8 + 4, 0xDEADBEEF);
+            }
+        }
+        long[] after = hash(wide, 8, WIDTH * 8);
+        assertEquals(0, FrameHasher.countChanged(before, after, before.length));
+
+        wide.put(WIDTH * 8 * 100 + 8 * 500, (byte) 0);
+        wide.put(WIDTH * 8 * 100 + 8 * 500 + 1, (byte) 1);
+        wide.put(WIDTH * 8 * 100 + 8 * 500 + 2, (byte) 2);
+        assertEquals(1, FrameHasher.countChanged(after, hash(wide, 8, WIDTH * 8), after.length));
+    }
+
+    @Test
+    public void hash_honoursBufferPositionAndLeavesItUnchanged() {
+        ByteBuffer frame = randomFrame(5, ROW_STRIDE);
+        long[] expected = hash(frame, 4, ROW_STRIDE);
+
+        ByteBuffer shifted = ByteBuffer.allocateDirect(ROW_STRIDE * HEIGHT + 16);
+        shifted.position(16);
+        shifted.put(frame.duplicate());
+        shifted.position(16);
+        long[] actual = hash(shifted, 4, ROW_STRIDE);
+
+        assertEquals(16, shifted.position());
+        assertEquals(0, FrameHasher.countChanged(expected, actual, expected.length));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void hash_rejectsShortBuffer() {
+        hash(ByteBuffer.allocateDirect(ROW_STRIDE * (HEIGHT - 1)), 4, ROW_STRIDE);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.globally_draggable_widget.capture;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class ImageConverterTest {
+    private static final int BPP = 4;
+
+    private static ByteBuffer plane(int size) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        for (int i = 0; i < size; i++) {
+            buffer.put(i, (byte) (i * 31));
+        }
+        return buffer;
+    }
+
+    /** Consumes the view the way {@code Bitmap.copyPixelsFromBuffer} does. */
+    private static byte[] drain(ByteBuffer view, int bytes) {
+        byte[] out = new byte[bytes];
+        view.get(out);
+        return out;
+    }
+
+    @Test
+    public void sameTightlyPackedPlane_convertsTwice() {
+        int width = 8;
+        int height = 4;
+        int bytes = width * height * BPP;
+        ByteBuffer plane = plane(bytes);
+
+        byte[] first = drain(ImageConverter.regionStart(plane, 0, 0, BPP, width * BPP), bytes);
+        byte[] second = drain(ImageConverter.regionStart(plane, 0, 0, BPP, width * BPP), bytes);
+
+        assertEquals(0, plane.position());
+        assertEquals(bytes, plane.remaining());
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    public void samePaddedPlane_compactsTwice() {
+        int width = 5;
+        int height = 3;
+        int rowStride = 32;
+        ByteBuffer plane = plane(rowStride * height);
+        ByteBuffer first = ByteBuffer.allocate(width * height * BPP);
+        ByteBuffer second = ByteBuffer.allocate(width * height * BPP);
+
+        PlaneCompactor.compact(ImageConverter.regionStart(plane, 1, 1, BPP, rowStride),
+                width - 1, height - 1, BPP, rowStride, BPP, first);
+        PlaneCompactor.compact(ImageConverter.regionStart(plane, 1, 1, BPP, rowStride),
+                width - 1, height - 1, BPP, rowStride, BPP, second);
+
+        assertEquals(0, plane.position());
+        assertEquals(first.position(), second.position());
+        assertArrayEquals(first.array(), second.array());
+    }
+
+    @Test
+    public void regionStart_offsetsFromPlanePosition() {
+        ByteBuffer plane = plane(256);
+        ByteBuffer view = ImageConverter.regionStart(plane, 2, 3, BPP, 40);
+        assertEquals(3 * 40 + 2 * BPP, view.position());
+        assertEquals(plane.get(view.position()), view.get());
+        assertEquals(0, plane.position());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.globally_draggable_widget.capture;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ImageEntropyTest {
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 1280;
+    private static final int ROW_STRIDE = WIDTH * 4 + 64;
+
+    private final int[] histogram = new int[256];
+
+    private interface Pixel {
+        int grey(int x, int y);
+    }
+
+    private static ByteBuffer frame(Pixel pixel) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(ROW_STRIDE * HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int offset = y * ROW_STRIDE + x * 4;
+                byte v = (byte) pixel.grey(x, y);
+                buffer.put(offset, v);
+                buffer.put(offset + 1, v);
+                buffer.put(offset + 2, v);
+                buffer.put(offset + 3, (byte) 0xFF);
+            }
+        }
+        return buffer;
+    }
+
+    private double estimate(ByteBuffer buffer) {
+        return ImageEntropy.estimate(buffer, WIDTH, HEIGHT, 4, ROW_STRIDE, histogram);
+    }
+
+    @Test
+    public void solidColour_hasZeroEntropy() {
+        assertEquals(0, estimate(frame((x, y) -> 200)), 1e-9);
+    }
+
+    @Test
+    public void twoColourUi_isAboutOneBit() {
+        double bits = estimate(frame((x, y) -> (y / 40) % 2 == 0 ? 250 : 30));
+        assertEquals(1, bits, 0.05);
+        assertTrue(bits < AutoEncoderPolicy.DEFAULT_LOSSLESS_BELOW_BITS);
+    }
+
+    @Test
+    public void noise_isNearMaximum() {
+        Random random = new Random(1);
+        double bits = estimate(frame((x, y) -> random.nextInt(256)));
+        assertTrue(bits > 7.5 && bits <= ImageEntropy.MAX_BITS);
+        assertTrue(bits >= AutoEncoderPolicy.DEFAULT_LOSSLESS_BELOW_BITS);
+    }
+
+    @Test
+    public void gradient_isHighEntropy() {
+        double bits = estimate(frame((x, y) -> (x + y) * 255 / (WIDTH + HEIGHT)));
+        assertTrue(bits > 7);
+    }
+
+    @Test
+    public void sourcePositionIsTheOrigin() {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + 4 * 4);
+        buffer.position(16);
+        for (int i = 0; i < 4; i++) {
+            buffer.put(16 + i * 4, (byte) (i * 60));
+        }
+        double bits = ImageEntropy.estimate(buffer, 2, 2, 4, 8, histogram);
+        assertEquals(2, bits, 1e-9);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.globally_draggable_widget.capture;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class PlaneCompactorTest {
+    private static final int BPP = 4;
+
+    /**
+     * Builds a plane where every visible byte encodes its (x, y, channel) and padding
+     * bytes are filled with a marker that must never reach the output.
+     */
+    private static ByteBuffer plane(int width, int height, int pixelStride, int rowStride,
+                                    boolean trimLastRow, boolean direct) {
+        int size = rowStride * height;
+        if (trimLastRow) {
+            size = rowStride * (height - 1) + (width - 1) * pixelStride + BPP;
+        }
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            buffer.put(i, (byte) 0xEE);
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                for (int b = 0; b < BPP; b++) {
+                    buffer.put(y * rowStride + x * pixelStride + b, expected(x, y, b));
+                }
+            }
+        }
+        return buffer;
+    }
+
+    private static byte expected(int x, int y, int channel) {
+        return (byte) (x * 7 + y * 13 + channel);
+    }
+
+    private static void assertPacked(ByteBuffer out, int width, int height) {
+        assertEquals(width * height * BPP, out.position());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                for (int b = 0; b < BPP; b++) {
+                    assertEquals("pixel " + x + "," + y + " channel " + b,
+                            expected(x, y, b), out.get((y * width + x) * BPP + b));
+                }
+            }
+        }
+    }
+
+    private static void check(int width, int height, int pixelStride, int rowStride,
+                              boolean trimLastRow, boolean direct) {
+        ByteBuffer src = plane(width, height, pixelStride, rowStride, trimLastRow, direct);
+        ByteBuffer dst = ByteBuffer.allocateDirect(width * height * BPP);
+        PlaneCompactor.compact(src, width, height, pixelStride, rowStride, BPP, dst);
+        assertPacked(dst, width, height);
+        assertEquals("source position must not move", 0, src.position());
+    }
+
+    @Test
+    public void tightlyPacked_copiesInOnePass() {
+        assertTrue(PlaneCompactor.isTightlyPacked(16, 4, 64, BPP));
+        check(16, 9, 4, 64, false, true);
+    }
+
+    @Test
+    public void alignedRowPadding_isDropped() {
+        assertFalse(PlaneCompactor.isTightlyPacked(30, 4, 128, BPP));
+        check(30, 7, 4, 128, false, true);
+    }
+
+    @Test
+    public void paddingNotMultipleOfPixelStride_isDropped() {
+        check(5, 5, 4, 5 * 4 + 6, false, false);
+    }
+
+    @Test
+    public void lastRowWithoutPadding_isAccepted() {
+        check(30, 4, 4, 128, true, true);
+    }
+
+    @Test
+    public void interleavedPixelStride_isGathered() {
+        check(6, 3, 8, 6 * 8 + 4, false, false);
+    }
+
+    @Test
+    public void singleRow() {
+        check(11, 1, 4, 64, true, false);
+    }
+
+    @Test
+    public void writesAtDestinationPosition() {
+        ByteBuffer src = plane(3, 2, 4, 16, false, false);
+        ByteBuffer dst = ByteBuffer.allocate(8 + 3 * 2 * BPP);
+        dst.position(8);
+        PlaneCompactor.compact(src, 3, 2, 4, 16, BPP, dst);
+        assertEquals(dst.capacity(), dst.position());
+        assertEquals(expected(0, 0, 0), dst.get(8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void destinationTooSmall_throws() {
+        ByteBuffer src = plane(8, 8, 4, 64, false, false);
+        PlaneCompactor.compact(src, 8, 8, 4, 64, BPP, ByteBuffer.allocate(8 * 8 * BPP - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sourceTooSmall_throws() {
+        ByteBuffer src = ByteBuffer.allocate(64 * 7);
+        PlaneCompactor.compact(src, 8, 8, 4, 64, BPP, ByteBuffer.allocate(8 * 8 * BPP));
+    }
+}
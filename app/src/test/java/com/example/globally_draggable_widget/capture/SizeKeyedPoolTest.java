@@ -0,0 +1,133 @@
+package com.example.globally_draggable_widget.capture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SizeKeyedPoolTest {
+
+    private static final class Buffer {
+        final int width;
+        final int height;
+
+        Buffer(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final List<Buffer> discarded = new ArrayList<>();
+    private int allocations;
+
+    private final SizeKeyedPool.Allocator<Buffer> allocator = new SizeKeyedPool.Allocator<Buffer>() {
+        @Override
+        public Buffer allocate(int width, int height) {
+            allocations++;
+            return new Buffer(width, height);
+        }
+
+        @Override
+        public long sizeOf(Buffer item) {
+            return (long) item.width * item.height * 4;
+        }
+
+        @Override
+        public void discard(Buffer item) {
+            discarded.add(item);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        discarded.clear();
+        allocations = 0;
+    }
+
+    @Test
+    public void acquire_afterRelease_reusesSameObject() {
+        SizeKeyedPool<Buffer> pool = new SizeKeyedPool<>(allocator, 1 << 20);
+        Buffer first = pool.acquire(100, 100);
+        pool.release(first, 100, 100);
+        assertSame(first, pool.acquire(100, 100));
+        assertEquals(1, allocations);
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getBytesResident());
+    }
+
+    @Test
+    public void acquire_differentSize_misses() {
+        SizeKeyedPool<Buffer> pool = new SizeKeyedPool<>(allocator, 1 << 20);
+        pool.release(pool.acquire(100, 100), 100, 100);
+        Buffer other = pool.acquire(100, 50);
+        assertEquals(100, other.width);
+        assertEquals(50, other.height);
+        assertEquals(2, pool.getMisses());
+        assertEquals(40000, pool.getBytesResident());
+    }
+
+    @Test
+    public void burst_reusesOneBufferAtSteadyState() {
+        SizeKeyedPool<Buffer> pool = new SizeKeyedPool<>(allocator, 64L * 1024 * 1024);
+        for (int i = 0; i < 100; i++) {
+            Buffer buffer = pool.acquire(1440, 2560);
+            pool.release(buffer, 1440, 2560);
+        }
+        assertEquals(1, allocations);
+        assertEquals(99, pool.getHits());
+        assertEquals(1440L * 2560 * 4, pool.getBytesResident());
+    }
+
+    @Test
+    public void release_overCap_evictsOldestIdle() {
+        SizeKeyedPool<Buffer> pool = new SizeKeyedPool<>(allocator, 100_000);
+        Buffer a = pool.acquire(100, 100);
+        Buffer b = pool.acquire(100, 100);
+        Buffer c = pool.acquire(100, 100);
+        pool.release(a, 100, 100);
+        pool.release(b, 100, 100);
+        pool.release(c, 100, 100);
+
+        assertEquals(1, discarded.size());
+        assertSame(a, discarded.get(0));
+        assertEquals(80_000, pool.getBytesResident());
+        assertEquals(1, pool.getEvictions());
+    }
+
+    @Test
+    public void release_largerThanCap_isDiscarded() {
+        SizeKeyedPool<Buffer> pool = new SizeKeyedPool<>(allocator, 1000);
+        Buffer big = pool.acquire(100, 100);
+        pool.release(big, 100, 100);
+        assertSame(big, discarded.get(0));
+        assertEquals(0, pool.getBytesResident());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void clear_discardsEverything() {
+        SizeKeyedPool<Buffer> pool = new SizeKeyedPool<>(allocator, 1 << 20);
+        pool.release(pool.acquire(10, 10), 10, 10);
+        pool.release(pool.acquire(20, 20), 20, 20);
+        pool.clear();
+        assertEquals(2, discarded.size());
+        assertEquals(0, pool.getBytesResident());
+        pool.acquire(10, 10);
+        assertEquals(0, pool.getHits());
+    }
+
+    @Test
+    public void setMaxBytes_shrinking_evicts() {
+        SizeKeyedPool<Buffer> pool = new SizeKeyedPool<>(allocator, 1 << 20);
+        pool.release(pool.acquire(10, 10), 10, 10);
+        pool.release(pool.acquire(20, 20), 20, 20);
+        pool.setMaxBytes(1999);
+        assertEquals(1, discarded.size());
+        assertEquals(10, discarded.get(0).width);
+        assertEquals(1600, pool.getBytesResident());
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.globally_draggable_widget.metrics;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void sameName_returnsSameMetric() {
+        MetricsRegistry registry = new MetricsRegistry();
+        assertSame(registry.counter("a"), registry.counter("a"));
+        assertSame(registry.histogram("h"), registry.histogram("h"));
+        assertNotSame(registry.counter("a"), registry.counter("b"));
+    }
+
+    @Test
+    public void dump_listsMetricsSortedByName() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("capture.failed").increment();
+        registry.counter("capture.completed").add(3);
+        registry.histogram("capture.stage.encode").record(12_500);
+
+        String dump = dump(registry);
+        assertTrue(dump, dump.contains("capture.completed: 3"));
+        assertTrue(dump, dump.contains("capture.failed: 1"));
+        assertTrue(dump, dump.indexOf("capture.completed") < dump.indexOf("capture.failed"));
+        assertTrue(dump, dump.matches("(?s).*capture\\.stage\\.encode\\s+1\\s+12\\.50.*"));
+    }
+
+    @Test
+    public void reset_keepsHandedOutMetrics() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("c");
+        counter.add(5);
+        registry.reset();
+        assertEquals(0, counter.get());
+        counter.increment();
+        assertEquals(1, registry.counter("c").get());
+    }
+
+    private static String dump(MetricsRegistry registry) {
+        StringWriter out = new StringWriter();
+        registry.dump(new PrintWriter(out));
+        return out.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.globally_draggable_widget.overlay;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AttachBackoffTest {
+
+    @Test
+    public void delays_doubleUpToCeiling() {
+        AttachBackoff backoff = new AttachBackoff(50, 500, 6);
+        assertEquals(50, backoff.nextDelayMs());
+        assertEquals(100, backoff.nextDelayMs());
+        assertEquals(200, backoff.nextDelayMs());
+        assertEquals(400, backoff.nextDelayMs());
+        assertEquals(500, backoff.nextDelayMs());
+        assertEquals(500, backoff.nextDelayMs());
+    }
+
+    @Test
+    public void exhausted_afterMaxAttempts() {
+        AttachBackoff backoff = new AttachBackoff(50, 500, 2);
+        backoff.nextDelayMs();
+        backoff.nextDelayMs();
+        assertEquals(AttachBackoff.EXHAUSTED, backoff.nextDelayMs());
+        assertEquals(AttachBackoff.EXHAUSTED, backoff.nextDelayMs());
+        assertEquals(2, backoff.getAttempts());
+    }
+
+    @Test
+    public void reset_startsOver() {
+        AttachBackoff backoff = new AttachBackoff(50, 500, 2);
+        backoff.nextDelayMs();
+        backoff.nextDelayMs();
+        backoff.reset();
+        assertEquals(0, backoff.getAttempts());
+        assertEquals(50, backoff.nextDelayMs());
+    }
+
+    @Test
+    public void manyAttempts_doNotOverflow() {
+        AttachBackoff backoff = new AttachBackoff(1000, 60_000, 100);
+        for (int i = 0; i < 100; i++) {
+            long delay = backoff.nextDelayMs();
+            assertTrue(delay > 0 && delay <= 60_000);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ceilingBelowInitial_isRejected() {
+        new AttachBackoff(500, 50, 3);
+    }
+}
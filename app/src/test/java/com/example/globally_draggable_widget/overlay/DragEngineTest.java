@@ -0,0 +1,129 @@
+package com.example.globally_draggable_widget.overlay;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DragEngineTest {
+    private static final float WIDTH = 1000;
+    private static final float HEIGHT = 2000;
+
+    private DragEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new DragEngine(48);
+        engine.setBounds(0, 0, WIDTH, HEIGHT);
+    }
+
+    /** Drags at a constant velocity (px/s) with a 240 Hz touch panel. */
+    private long drag(float startX, float startY, float vx, float vy, long durationMs) {
+        long t = 1000;
+        engine.down(startX, startY, t);
+        for (long elapsed = 4; elapsed <= durationMs; elapsed += 4) {
+            engine.move(startX + vx * elapsed / 1000f, startY + vy * elapsed / 1000f, t + elapsed);
+        }
+        return t + durationMs;
+    }
+
+    private long settle(long t) {
+        int frames = 0;
+        while (engine.step(t += 16)) {
+            assertTrue("animation must settle", ++frames < 300);
+            assertTrue(engine.getY() >= 0 && engine.getY() <= HEIGHT);
+        }
+        return t;
+    }
+
+    @Test
+    public void velocityEstimate_matchesConstantDrag() {
+        long now = drag(100, 100, 800, -400, 80);
+        engine.updateVelocity(now);
+        assertEquals(164, engine.predictX(0), 0.01);
+        assertEquals(100 + 800 * 0.080f + 800 * 0.016f, engine.predictX(16), 0.5);
+        assertEquals(100 - 400 * 0.080f - 400 * 0.016f, engine.predictY(16), 0.5);
+    }
+
+    @Test
+    public void prediction_isCappedAndClamped() {
+        long now = drag(500, 500, 5000, 0, 40);
+        engine.updateVelocity(now);
+        assertEquals(engine.getX() + 48, engine.predictX(16), 0.01);
+
+        now = drag(990, 500, 2000, 0, 4);
+        engine.updateVelocity(now);
+        assertEquals(WIDTH, engine.predictX(16), 0.01);
+    }
+
+    @Test
+    public void slowRelease_snapsToNearerEdge() {
+        long now = drag(300, 500, 0, 0, 40);
+        assertTrue(engine.release(now));
+        settle(now);
+        assertEquals(0, engine.getX(), 0.01);
+        assertEquals(500, engine.getY(), 0.01);
+    }
+
+    @Test
+    public void flingTowardsFarEdge_snapsThere() {
+        long now = drag(300, 500, 3000, 0, 60);
+        engine.release(now);
+        settle(now);
+        assertEquals(WIDTH, engine.getX(), 0.01);
+    }
+
+    @Test
+    public void verticalFling_keepsMovingThenStops() {
+        long now = drag(0, 500, 0, 2000, 60);
+        float releasedY = engine.getY();
+        engine.release(now);
+        settle(now);
+        assertTrue(engine.getY() > releasedY + 300);
+        assertEquals(0, engine.getVelocityY(), 0.01);
+    }
+
+    @Test
+    public void verticalFling_stopsAtBottomEdge() {
+        long now = drag(0, 1900, 0, 6000, 40);
+        engine.release(now);
+        settle(now);
+        assertEquals(HEIGHT, engine.getY(), 0.01);
+    }
+
+    @Test
+    public void pauseBeforeRelease_cancelsFling() {
+        long now = drag(0, 500, 0, 3000, 60);
+        float y = engine.getY();
+        engine.release(now + 200);
+        settle(now + 200);
+        assertEquals(y, engine.getY(), 0.01);
+    }
+
+    @Test
+    public void alreadyAtEdge_needsNoAnimation() {
+        long now = drag(0, 500, 0, 0, 20);
+        assertFalse(engine.release(now + 100));
+        assertFalse(engine.isAnimating());
+    }
+
+    @Test
+    public void down_cancelsRunningAnimation() {
+        long now = drag(300, 500, 3000, 0, 60);
+        engine.release(now);
+        engine.step(now + 16);
+        engine.down(200, 200, now + 20);
+        assertFalse(engine.isAnimating());
+        assertFalse(engine.step(now + 32));
+    }
+
+    @Test
+    public void longFrameGap_isIntegratedStably() {
+        long now = drag(300, 500, 3000, 0, 60);
+        engine.release(now);
+        engine.step(now + 5000);
+        assertTrue(Float.isFinite(engine.getX()));
+        settle(now + 5000);
+        assertEquals(WIDTH, engine.getX(), 0.01);
+    }
+}
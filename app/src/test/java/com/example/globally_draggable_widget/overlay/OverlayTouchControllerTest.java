@@ -0,0 +1,182 @@
+package com.example.globally_draggable_widget.overlay;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class OverlayTouchControllerTest {
+
+    /** Records host calls in primitive fields so the host itself never allocates. */
+    private static class FakeHost implements OverlayTouchController.Host {
+        boolean dragEnabled = true;
+        int windowX = 100;
+        int windowY = 200;
+        int moves;
+        int commits;
+        int taps;
+        int dragsFinished;
+        int frameRequests;
+
+        @Override
+        public boolean isDragEnabled() {
+            return dragEnabled;
+        }
+
+        @Override
+        public int getWindowX() {
+            return windowX;
+        }
+
+        @Override
+        public int getWindowY() {
+            return windowY;
+        }
+
+        @Override
+        public void moveWindow(int x, int y) {
+            windowX = x;
+            windowY = y;
+            moves++;
+        }
+
+        @Override
+        public void commitWindow(int x, int y) {
+            windowX = x;
+            windowY = y;
+            commits++;
+        }
+
+        @Override
+        public void requestAnimationFrame() {
+            frameRequests++;
+        }
+
+        @Override
+        public void cancelAnimationFrame() {
+        }
+
+        @Override
+        public void onTap() {
+            taps++;
+        }
+
+        @Override
+        public void onDragFinished() {
+            dragsFinished++;
+        }
+    }
+
+    private FakeHost host;
+    private OverlayTouchController controller;
+
+    @Before
+    public void setUp() {
+        host = new FakeHost();
+        controller = new OverlayTouchController(host, 48);
+        controller.setDragBounds(0, 1000, 2000, 16);
+    }
+
+    private void drag(int events) {
+        long t = 1000;
+        controller.handleDown(500, 500, t);
+        for (int i = 1; i <= events; i++) {
+            // Two historical samples per batch, as a 240 Hz panel delivers at 120 Hz
+            controller.handleSample(500 + i * 3 - 2, 500 + i * 2, t + i * 8 - 4);
+            controller.handleMove(500 + i * 3, 500 + i * 2, t + i * 8);
+        }
+        controller.handleUp(t + events * 8 + 200);
+    }
+
+    @Test
+    public void tap_withoutMovement_isClick() {
+        controller.handleDown(500, 500, 0);
+        controller.handleMove(504, 503, 8);
+        controller.handleUp(16);
+        assertEquals(1, host.taps);
+        assertEquals(0, host.moves);
+        assertEquals(0, host.dragsFinished);
+    }
+
+    @Test
+    public void drag_movesWindowByFingerDelta() {
+        controller.handleDown(500, 500, 0);
+        controller.handleMove(560, 540, 40);
+        assertTrue(controller.isDragging());
+        // Window leads the finger by at most the prediction cap
+        assertTrue(host.windowX >= 160 && host.windowX <= 160 + 48);
+        assertTrue(host.windowY >= 240 && host.windowY <= 240 + 48);
+
+        controller.handleUp(400);
+        assertEquals(0, host.taps);
+        assertEquals(1, host.dragsFinished);
+        long frame = 400;
+        while (controller.animate(frame += 16)) {
+            assertTrue(frame < 10_000);
+        }
+        // Resting finger: no vertical fling, snapped to the nearer edge
+        assertEquals(0, host.windowX);
+        assertEquals(240, host.windowY);
+    }
+
+    @Test
+    public void disabledHost_ignoresGesture() {
+        host.dragEnabled = false;
+        assertFalse(controller.handleDown(500, 500, 0));
+        assertFalse(controller.handleMove(600, 600, 8));
+        assertFalse(controller.handleUp(16));
+        assertEquals(0, host.taps);
+        assertEquals(0, host.moves);
+    }
+
+    @Test
+    public void fastRelease_requestsFlingFrames() {
+        long t = 0;
+        controller.handleDown(500, 500, t);
+        for (int i = 1; i <= 10; i++) {
+            controller.handleMove(500 - i * 20, 500, t + i * 8);
+        }
+        controller.handleUp(t + 80);
+        assertEquals(1, host.frameRequests);
+
+        long frame = 96;
+        int frames = 0;
+        while (controller.animate(frame += 16)) {
+            assertTrue(++frames < 300);
+        }
+        assertEquals(0, host.windowX);
+    }
+
+    @Test
+    public void cancel_finishesDragWithoutTap() {
+        controller.handleDown(500, 500, 0);
+        controller.handleMove(600, 500, 8);
+        controller.handleCancel(16);
+        assertEquals(0, host.taps);
+        assertEquals(1, host.dragsFinished);
+    }
+
+    @Test
+    public void thousandEventDrag_allocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up so class loading and JIT compilation are excluded from the measurement
+        for (int i = 0; i < 20; i++) {
+            drag(1000);
+        }
+        long calibrateStart = threads.getThreadAllocatedBytes(threadId);
+        long calibrateEnd = threads.getThreadAllocatedBytes(threadId);
+        long overhead = calibrateEnd - calibrateStart;
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        drag(1000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+
+        assertEquals("bytes allocated by a 1000-event drag", 0, allocated);
+        assertTrue(host.moves > 0);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.globally_draggable_widget.record;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AudioPtsTrackerTest {
+    private static final int SAMPLE_RATE = 48_000;
+    private static final int CHUNK_FRAMES = 1024;
+    private static final long FRAME_30FPS_US = 33_333;
+
+    /**
+     * Simulates a capture whose audio clock runs {@code ppm} parts per million fast
+     * relative to the monotonic clock, with jittery timestamp reports once a second, and
+     * returns the largest error between assigned and true presentation times.
+     */
+    private static long maxErrorUs(double ppm, long durationSec, long startNs) {
+        AudioPtsTracker tracker = new AudioPtsTracker(SAMPLE_RATE);
+        Random random = new Random(42);
+        double nsPerFrame = 1e9 / (SAMPLE_RATE * (1 + ppm / 1e6));
+        long totalFrames = durationSec * SAMPLE_RATE;
+        long nextTimestampFrame = 0;
+        long maxError = 0;
+        long lastPts = Long.MIN_VALUE;
+
+        for (long frame = 0; frame < totalFrames; frame += CHUNK_FRAMES) {
+            if (frame >= nextTimestampFrame) {
+                long jitterNs = (long) (random.nextGaussian() * 200_000);
+                tracker.onTimestamp(frame, startNs + (long) (frame * nsPerFrame) + jitterNs);
+                nextTimestampFrame += SAMPLE_RATE;
+            }
+            long pts = tracker.nextPtsUs(CHUNK_FRAMES);
+            assertTrue("timestamps must increase", pts > lastPts);
+            lastPts = pts;
+
+            long truthUs = (startNs + (long) (frame * nsPerFrame)) / 1000;
+            maxError = Math.max(maxError, Math.abs(pts - truthUs));
+        }
+        return maxError;
+    }
+
+    @Test
+    public void exactClock_staysAligned() {
+        assertTrue(maxErrorUs(0, 60, 5_000_000_000L) < 1_000);
+    }
+
+    @Test
+    public void fastAudioClock_driftStaysUnderOneFrameOverThirtyMinutes() {
+        long error = maxErrorUs(150, 30 * 60, 123_456_789_000L);
+        assertTrue("max error " + error + "us", error < FRAME_30FPS_US);
+    }
+
+    @Test
+    public void slowAudioClock_driftStaysUnderOneFrameOverThirtyMinutes() {
+        long error = maxErrorUs(-150, 30 * 60, 987_654_321L);
+        assertTrue("max error " + error + "us", error < FRAME_30FPS_US);
+    }
+
+    @Test
+    public void withoutTimestamps_anchorsFromReadTime() {
+        AudioPtsTracker tracker = new AudioPtsTracker(SAMPLE_RATE);
+        long readEndNs = 10_000_000_000L;
+        tracker.anchorIfNeeded(480, readEndNs);
+        long pts = tracker.nextPtsUs(480);
+        assertEquals(readEndNs / 1000 - 10_000, pts);
+        assertEquals(pts + 10_000, tracker.nextPtsUs(480));
+        assertEquals(960, tracker.getFramesRead());
+    }
+
+    @Test
+    public void largeCorrection_isSlewedNotJumped() {
+        AudioPtsTracker tracker = new AudioPtsTracker(SAMPLE_RATE);
+        tracker.onTimestamp(0, 0);
+        long first = tracker.nextPtsUs(SAMPLE_RATE);
+        // Clock suddenly reports 50 ms earlier; output must keep increasing
+        tracker.onTimestamp(SAMPLE_RATE, 950_000_000L);
+        long second = tracker.nextPtsUs(SAMPLE_RATE);
+        assertEquals(first + 1_000_000 - AudioPtsTracker.MAX_SLEW_US, second);
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.globally_draggable_widget.record;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EncodedFrameRingTest {
+    private static final long FRAME_US = 33_333;
+
+    private static ByteBuffer frame(int size, int seed) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        for (int i = 0; i < size; i++) {
+            buffer.put((byte) (seed + i));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int flagsFor(int index, int gop) {
+        return index % gop == 0 ? EncodedFrameRing.FLAG_KEY_FRAME : 0;
+    }
+
+    private static List<Long> dumpPts(EncodedFrameRing ring) throws Exception {
+        List<Long> pts = new ArrayList<>();
+        ring.forEachFromKeyFrame((frame, ptsUs, flags) -> pts.add(ptsUs));
+        return pts;
+    }
+
+    @Test
+    public void dump_returnsFramesIntactAndInOrder() throws Exception {
+        EncodedFrameRing ring = new EncodedFrameRing(10_000, 100, 10_000_000);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ring.write(frame(100 + i, i), i * FRAME_US, flagsFor(i, 5)));
+        }
+
+        int[] index = {0};
+        int visited = ring.forEachFromKeyFrame((frame, ptsUs, flags) -> {
+            int i = index[0]++;
+            assertEquals(i * FRAME_US, ptsUs);
+            assertEquals(frame(100 + i, i), frame);
+        });
+        assertEquals(10, visited);
+    }
+
+    @Test
+    public void write_leavesSourcePositionUnchanged() {
+        EncodedFrameRing ring = new EncodedFrameRing(1000, 10, 1_000_000);
+        ByteBuffer source = frame(64, 0);
+        source.position(8);
+        ring.write(source, 0, EncodedFrameRing.FLAG_KEY_FRAME);
+        assertEquals(8, source.position());
+        assertEquals(56, ring.getBytesUsed());
+    }
+
+    @Test
+    public void write_overCapacity_evictsOldestAndWraps() throws Exception {
+        EncodedFrameRing ring = new EncodedFrameRing(1000, 100, 100_000_000);
+        for (int i = 0; i < 50; i++) {
+            ring.write(frame(300, i), i * FRAME_US, EncodedFrameRing.FLAG_KEY_FRAME);
+            assertTrue(ring.getBytesUsed() <= 1000);
+        }
+        // Three 300 byte frames fit; the fourth would wrap onto the oldest
+        assertEquals(3, ring.size());
+        List<Long> pts = dumpPts(ring);
+        assertEquals(3, pts.size());
+        assertEquals(49 * FRAME_US, (long) pts.get(2));
+
+        int[] index = {47};
+        ring.forEachFromKeyFrame((frame, ptsUs, flags) ->
+                assertEquals(frame(300, index[0]++), frame));
+    }
+
+    /**
+     * Copies a visited frame the way {@code MediaMuxer.writeSampleData} does: from the
+     * buffer's base address plus an offset, ignoring the buffer's position.
+     */
+    private static ByteBuffer nativeCopy(ByteBuffer buffer, int offset, int size) {
+        ByteBuffer base = buffer.duplicate();
+        base.clear();
+        base.position(offset);
+        base.limit(offset + size);
+        ByteBuffer copy = ByteBuffer.allocate(size);
+        copy.put(base);
+        copy.flip();
+        return copy;
+    }
+
+    @Test
+    public void visitor_offsetsAddressFramesFromBufferStartAfterWrap() throws Exception {
+        EncodedFrameRing ring = new EncodedFrameRing(1000, 100, 100_000_000);
+        // Frames 0-2 fill [0, 900); frame 3 wraps to 0 and frame 4 follows it at 300
+        for (int i = 0; i < 5; i++) {
+            ring.write(frame(300, i), i * FRAME_US, EncodedFrameRing.FLAG_KEY_FRAME);
+        }
+        int[] expectedOffsets = {600, 0, 300};
+        int[] index = {0};
+        ring.forEachFromKeyFrame((frame, ptsUs, flags) -> {
+            int i = index[0]++;
+            assertEquals(expectedOffsets[i], frame.position());
+            assertEquals(300, frame.remaining());
+            assertEquals(frame(300, i + 2),
+                    nativeCopy(frame, frame.position(), frame.remaining()));
+        });
+        assertEquals(3, index[0]);
+    }
+
+    @Test
+    public void write_mixedSizes_keepsEveryRetainedFrameIntact() throws Exception {
+        EncodedFrameRing ring = new EncodedFrameRing(4096, 64, 100_000_000);
+        int written = 0;
+        for (int i = 0; i < 500; i++) {
+            int size = 50 + (i * 37) % 900;
+            ring.write(frame(size, i), i * FRAME_US, EncodedFrameRing.FLAG_KEY_FRAME);
+            written++;
+        }
+        assertTrue(ring.getBytesUsed() <= 4096);
+        int newest = written - 1;
+        int oldest = newest - ring.size() + 1;
+        int[] index = {oldest};
+        ring.forEachFromKeyFrame((frame, ptsUs, flags) -> {
+            int i = index[0]++;
+            assertEquals(i * FRAME_US, ptsUs);
+            assertEquals(frame(50 + (i * 37) % 900, i), frame);
+        });
+        assertEquals(newest + 1, index[0]);
+    }
+
+    @Test
+    public void write_beyondWindow_evictsByTime() {
+        EncodedFrameRing ring = new EncodedFrameRing(1 << 20, 1000, 1_000_000);
+        for (int i = 0; i < 90; i++) {
+            ring.write(frame(10, i), i * FRAME_US, flagsFor(i, 30));
+        }
+        // One second at 30 fps plus the frame on the boundary
+        assertEquals(31, ring.size());
+    }
+
+    @Test
+    public void write_beyondFrameCount_evictsOldest() {
+        EncodedFrameRing ring = new EncodedFrameRing(1 << 20, 8, 100_000_000);
+        for (int i = 0; i < 20; i++) {
+            ring.write(frame(10, i), i * FRAME_US, EncodedFrameRing.FLAG_KEY_FRAME);
+        }
+        assertEquals(8, ring.size());
+        assertEquals(80, ring.getBytesUsed());
+    }
+
+    @Test
+    public void dump_startsAtOldestKeyFrame() throws Exception {
+        EncodedFrameRing ring = new EncodedFrameRing(1 << 20, 10, 100_000_000);
+        for (int i = 0; i < 25; i++) {
+            ring.write(frame(10, i), i * FRAME_US, flagsFor(i, 10));
+        }
+        // Frames 15..24 are held; the first key frame among them is 20
+        List<Long> pts = dumpPts(ring);
+        assertEquals(5, pts.size());
+        assertEquals(20 * FRAME_US, (long) pts.get(0));
+        assertEquals(4 * FRAME_US, ring.getBufferedDurationUs());
+    }
+
+    @Test
+    public void dump_withoutKeyFrame_visitsNothing() throws Exception {
+        EncodedFrameRing ring = new EncodedFrameRing(1000, 10, 1_000_000);
+        ring.write(frame(10, 0), 0, 0);
+        assertFalse(ring.hasKeyFrame());
+        assertTrue(dumpPts(ring).isEmpty());
+    }
+
+    @Test
+    public void write_frameLargerThanRing_isDropped() {
+        EncodedFrameRing ring = new EncodedFrameRing(100, 10, 1_000_000);
+        assertFalse(ring.write(frame(101, 0), 0, EncodedFrameRing.FLAG_KEY_FRAME));
+        assertEquals(0, ring.size());
+        assertEquals(1, ring.getDroppedFrames());
+    }
+
+    @Test
+    public void steadyStateWrites_allocateNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        EncodedFrameRing ring = new EncodedFrameRing(256 * 1024, 300, 5_000_000);
+        ByteBuffer[] frames = new ByteBuffer[30];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = frame(i == 0 ? 20_000 : 2_000 + i * 50, i);
+        }
+
+        // Warm up so class loading and JIT compilation are excluded from the measurement
+        long pts = 0;
+        for (int i = 0; i < 20_000; i++, pts += FRAME_US) {
+            ring.write(frames[i % 30], pts, flagsFor(i, 30));
+        }
+        long calibrateStart = threads.getThreadAllocatedBytes(threadId);
+        long calibrateEnd = threads.getThreadAllocatedBytes(threadId);
+        long overhead = calibrateEnd - calibrateStart;
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 3_000; i++, pts += FRAME_US) {
+            ring.write(frames[i % 30], pts, flagsFor(i, 30));
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+
+        assertEquals("bytes allocated by 3000 ring writes", 0, allocated);
+        assertTrue(ring.getBytesUsed() <= ring.getCapacityBytes());
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.globally_draggable_widget.record;
+
+import org.junit.Test;
+
+import static com.example.globally_draggable_widget.record.RecordingQualityGovernor.*;
+import static org.junit.Assert.*;
+
+public class RecordingQualityGovernorTest {
+    private static final RecordingConfig CONFIG = new RecordingConfig(
+            RecordingConfig.MIME_AVC, 8_000_000, 60, 1f, RecordingConfig.AudioSource.NONE);
+
+    /**
+     * Replays a pressure trace of {thermal status, encoder lag ms, dropped frames} ticks
+     * and returns the level after each tick.
+     */
+    private static int[] replay(RecordingQualityGovernor governor, long[][] trace) {
+        int[] levels = new int[trace.length];
+        for (int i = 0; i < trace.length; i++) {
+            governor.update((int) trace[i][0], trace[i][1], trace[i][2]);
+            levels[i] = governor.getLevel();
+        }
+        return levels;
+    }
+
+    private static long[][] repeat(int ticks, int thermal, long lagMs, long dropped) {
+        long[][] trace = new long[ticks][];
+        for (int i = 0; i < ticks; i++) {
+            trace[i] = new long[]{thermal, lagMs, dropped};
+        }
+        return trace;
+    }
+
+    @Test
+    public void calmDevice_staysAtFullQuality() {
+        RecordingQualityGovernor governor = new RecordingQualityGovernor(60);
+        int[] levels = replay(governor, repeat(60, THERMAL_NONE, 10, 0));
+        for (int level : levels) {
+            assertEquals(0, level);
+        }
+        Step step = governor.getStep();
+        assertEquals(8_000_000, step.bitrate(CONFIG));
+    }
+
+    @Test
+    public void thermalRamp_raisesFloorImmediately() {
+        RecordingQualityGovernor governor = new RecordingQualityGovernor(60);
+        assertFalse(governor.update(THERMAL_LIGHT, 0, 0));
+        assertTrue(governor.update(THERMAL_MODERATE, 0, 0));
+        assertEquals(1, governor.getLevel());
+        assertTrue(governor.update(THERMAL_SEVERE, 0, 0));
+        assertEquals(3, governor.getLevel());
+        assertTrue(governor.update(THERMAL_CRITICAL, 0, 0));
+        assertEquals(LADDER.length - 1, governor.getLevel());
+        assertFalse(governor.update(THERMAL_SHUTDOWN, 0, 0));
+
+        Step step = governor.getStep();
+        assertTrue(step.bitrate(CONFIG) < CONFIG.getBitrate() / 2);
+    }
+
+    @Test
+    public void sustainedBacklog_stepsDownOncePerCooldown() {
+        RecordingQualityGovernor governor = new RecordingQualityGovernor(60);
+        long lag = governor.getLagThresholdMs() + 1;
+        int[] levels = replay(governor, repeat(7, THERMAL_NONE, lag, 0));
+        assertArrayEquals(new int[]{1, 1, 1, 2, 2, 2, 3}, levels);
+    }
+
+    @Test
+    public void droppedFrames_countAsPressure() {
+        RecordingQualityGovernor governor = new RecordingQualityGovernor(30);
+        assertTrue(governor.update(THERMAL_NONE, 0, 3));
+        assertEquals(1, governor.getLevel());
+    }
+
+    @Test
+    public void backlogSpike_recoversAfterCalmTicks() {
+        RecordingQualityGovernor governor = new RecordingQualityGovernor(60);
+        governor.update(THERMAL_NONE, 500, 4);
+        assertEquals(1, governor.getLevel());
+
+        // Cooldown plus the calm streak before stepping back up
+        int[] levels = replay(governor,
+                repeat(COOLDOWN_TICKS + RECOVER_TICKS, THERMAL_NONE, 5, 0));
+        for (int i = 0; i < levels.length - 1; i++) {
+            assertEquals("tick " + i, 1, levels[i]);
+        }
+        assertEquals(0, levels[levels.length - 1]);
+    }
+
+    @Test
+    public void oscillatingPressure_doesNotFlap() {
+        RecordingQualityGovernor governor = new RecordingQualityGovernor(60);
+        int changes = 0;
+        for (int i = 0; i < 100; i++) {
+            long lag = i % 4 == 0 ? 200 : 5;
+            if (governor.update(THERMAL_NONE, lag, 0)) {
+                changes++;
+            }
+        }
+        // Pressure every fourth tick never leaves a long enough calm streak to recover
+        assertEquals(LADDER.length - 1, changes);
+        assertEquals(LADDER.length - 1, governor.getLevel());
+    }
+
+    @Test
+    public void recovery_neverGoesBelowThermalFloor() {
+        RecordingQualityGovernor governor = new RecordingQualityGovernor(60);
+        replay(governor, repeat(12, THERMAL_NONE, 500, 0));
+        assertEquals(LADDER.length - 1, governor.getLevel());
+
+        replay(governor, repeat(100, THERMAL_SEVERE, 0, 0));
+        assertEquals(thermalFloor(THERMAL_SEVERE), governor.getLevel());
+
+        replay(governor, repeat(100, THERMAL_NONE, 0, 0));
+        assertEquals(0, governor.getLevel());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroFrameRate_isRejected() {
+        new RecordingQualityGovernor(0);
+    }
+}
@@ -0,0 +1,47 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+// Benchmarks the app's Android-free hot paths on the JVM. The sources are compiled
+// straight from :app so there is nothing to keep in sync.
+val appSources = rootProject.file("app/src/main/java")
+val sharedSources = listOf(
+    "com/example/globally_draggable_widget/capture/PlaneCompactor.java",
+    "com/example/globally_draggable_widget/capture/ImageEntropy.java",
+    "com/example/globally_draggable_widget/capture/FrameHasher.java",
+    "com/example/globally_draggable_widget/overlay/VelocityEstimator.java",
+    "com/example/globally_draggable_widget/overlay/DragEngine.java",
+    "com/example/globally_draggable_widget/record/EncodedFrameRing.java",
+)
+
+sourceSets {
+    main {
+        java {
+            srcDir(appSources)
+            setIncludes(sharedSources)
+        }
+    }
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    resultFormat = "JSON"
+}
+
+extra["benchmarkTask"] = "jmh"
+extra["benchmarkResults"] = files(layout.buildDirectory.file("results/jmh/results.json"))
+apply(from = rootProject.file("gradle/benchmark-baseline.gradle.kts"))
@@ -0,0 +1,53 @@
+package com.example.globally_draggable_widget.benchmark;
+
+import com.example.globally_draggable_widget.overlay.DragEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One drag gesture at 120 Hz input followed by the fling and snap animation, i.e. the
+ * work done on the main thread between touch down and the widget settling.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DragEngineBenchmark {
+    private static final int MOVES = 60;
+    private static final long INPUT_INTERVAL_MS = 8;
+    private static final long FRAME_INTERVAL_MS = 16;
+
+    private DragEngine engine;
+
+    @Setup
+    public void setUp() {
+        engine = new DragEngine(48f);
+        engine.setBounds(0f, 0f, 1080f, 2400f);
+    }
+
+    @Benchmark
+    public float gesture() {
+        long time = 0;
+        engine.down(100f, 200f, time);
+        for (int i = 1; i <= MOVES; i++) {
+            time += INPUT_INTERVAL_MS;
+            engine.move(100f + i * 9f, 200f + i * 14f, time);
+            engine.updateVelocity(time);
+            engine.predictX(FRAME_INTERVAL_MS);
+            engine.predictY(FRAME_INTERVAL_MS);
+        }
+        if (engine.release(time)) {
+            while (engine.step(time += FRAME_INTERVAL_MS)) {
+                // Run the animation to rest
+            }
+        }
+        return engine.getX() + engine.getY();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.globally_draggable_widget.benchmark;
+
+import com.example.globally_draggable_widget.record.EncodedFrameRing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing encoder output into a full replay ring, so every write also evicts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EncodedFrameRingBenchmark {
+    private static final int FRAME_BYTES = 16 * 1024;
+    private static final long FRAME_US = 33_333;
+    private static final int KEY_FRAME_INTERVAL = 30;
+
+    private EncodedFrameRing ring;
+    private ByteBuffer frame;
+    private long pts;
+    private int count;
+
+    @Setup
+    public void setUp() {
+        ring = new EncodedFrameRing(8 * 1024 * 1024, 1024, 15_000_000L);
+        frame = FrameData.frame(FRAME_BYTES, 1, FRAME_BYTES, 3);
+        for (int i = 0; i < 2048; i++) {
+            write();
+        }
+    }
+
+    @Benchmark
+    public boolean write() {
+        frame.clear();
+        int flags = count++ % KEY_FRAME_INTERVAL == 0 ? EncodedFrameRing.FLAG_KEY_FRAME : 0;
+        pts += FRAME_US;
+        return ring.write(frame, pts, flags);
+    }
+}
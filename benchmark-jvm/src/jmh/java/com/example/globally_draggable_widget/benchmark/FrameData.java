@@ -0,0 +1,35 @@
+package com.example.globally_draggable_widget.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Synthetic RGBA frames laid out like an {@code ImageReader} plane.
+ */
+final class FrameData {
+    static final int BYTES_PER_PIXEL = 4;
+
+    private FrameData() {
+    }
+
+    /**
+     * Row stride padded to a 64-byte boundary, the alignment most gralloc implementations use.
+     */
+    static int paddedRowStride(int width) {
+        return (width * BYTES_PER_PIXEL + 63) & ~63;
+    }
+
+    static ByteBuffer frame(int width, int height, int rowStride, long seed) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(rowStride * height)
+                .order(ByteOrder.nativeOrder());
+        byte[] row = new byte[rowStride];
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            random.nextBytes(row);
+            buffer.put(row);
+        }
+        buffer.clear();
+        return buffer;
+    }
+}
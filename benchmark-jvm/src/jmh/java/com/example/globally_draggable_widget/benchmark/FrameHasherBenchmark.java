@@ -0,0 +1,58 @@
+package com.example.globally_draggable_widget.benchmark;
+
+import com.example.globally_draggable_widget.capture.FrameHasher;
+import com.example.globally_draggable_widget.capture.ImageEntropy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-frame analysis done before conversion: tile hashing for duplicate detection
+ * and the entropy estimate that picks an encoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameHasherBenchmark {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 2400;
+
+    @Param({"32", "64", "128"})
+    public int tileSize;
+
+    private FrameHasher hasher;
+    private ByteBuffer frame;
+    private int rowStride;
+    private long[] hashes;
+    private int[] histogram;
+
+    @Setup
+    public void setUp() {
+        hasher = new FrameHasher(tileSize);
+        rowStride = FrameData.paddedRowStride(WIDTH);
+        frame = FrameData.frame(WIDTH, HEIGHT, rowStride, 2);
+        hashes = new long[hasher.tileCount(WIDTH, HEIGHT)];
+        histogram = new int[256];
+    }
+
+    @Benchmark
+    public long[] hash() {
+        hasher.hash(frame, WIDTH, HEIGHT, FrameData.BYTES_PER_PIXEL, rowStride, hashes);
+        return hashes;
+    }
+
+    @Benchmark
+    public double entropy() {
+        return ImageEntropy.estimate(frame, WIDTH, HEIGHT, FrameData.BYTES_PER_PIXEL, rowStride,
+                histogram);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.globally_draggable_widget.benchmark;
+
+import com.example.globally_draggable_widget.capture.PlaneCompactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies a full-screen RGBA plane into a tightly packed buffer, as
+ * {@code ImageConverter} does before every bitmap upload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlaneCompactorBenchmark {
+    @Param({"1080x2400", "1440x3200"})
+    public String size;
+
+    @Param({"true", "false"})
+    public boolean padded;
+
+    private int width;
+    private int height;
+    private int rowStride;
+    private ByteBuffer src;
+    private ByteBuffer dst;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+        int packed = width * FrameData.BYTES_PER_PIXEL;
+        rowStride = padded ? Math.max(FrameData.paddedRowStride(width), packed + 64) : packed;
+        src = FrameData.frame(width, height, rowStride, 1);
+        dst = ByteBuffer.allocateDirect(packed * height);
+    }
+
+    @Benchmark
+    public ByteBuffer compact() {
+        dst.clear();
+        PlaneCompactor.compact(src, width, height, FrameData.BYTES_PER_PIXEL, rowStride,
+                FrameData.BYTES_PER_PIXEL, dst);
+        return dst;
+    }
+}
@@ -0,0 +1,66 @@
+plugins {
+    alias(libs.plugins.android.library)
+    alias(libs.plugins.androidx.benchmark)
+}
+
+// On-device benchmarks for the capture stages that need the framework: Image to Bitmap
+// conversion and the Bitmap encoders. The capture classes are copied from :app rather than
+// depending on it, since an application module can't be a library dependency.
+val appCaptureSources = rootProject.file("app/src/main/java")
+val syncAppSources = tasks.register<Sync>("syncAppSources") {
+    from(appCaptureSources) {
+        include(
+            "com/example/globally_draggable_widget/capture/BitmapPool.java",
+            "com/example/globally_draggable_widget/capture/SizeKeyedPool.java",
+            "com/example/globally_draggable_widget/capture/PlaneCompactor.java",
+            "com/example/globally_draggable_widget/capture/ImageConverter.java",
+            "com/example/globally_draggable_widget/capture/ImageEncoder.java",
+            "com/example/globally_draggable_widget/capture/ImageEncoders.java",
+            "com/example/globally_draggable_widget/capture/EncodeBuffer.java",
+        )
+    }
+    into(layout.buildDirectory.dir("generated/appSources"))
+}
+
+android {
+    namespace = "com.example.globally_draggable_widget.benchmark"
+    compileSdk = 34
+
+    defaultConfig {
+        minSdk = 24
+
+        testInstrumentationRunner = "androidx.benchmark.junit4.AndroidBenchmarkRunner"
+    }
+
+    // Measure optimized, non-debuggable code
+    testBuildType = "release"
+    buildTypes {
+        release {
+            isMinifyEnabled = false
+        }
+    }
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+    sourceSets["main"].java.srcDir(syncAppSources.map { it.destinationDir })
+}
+
+tasks.named("preBuild") {
+    dependsOn(syncAppSources)
+}
+
+dependencies {
+    androidTestImplementation(libs.benchmark.junit4)
+    androidTestImplementation(libs.ext.junit)
+}
+
+// Device timings only compare on the same device: record baselines/benchmark.json on the
+// reference device with -PupdateBaseline. Until then the check fails for every benchmark.
+extra["benchmarkTask"] = "connectedReleaseAndroidTest"
+extra["benchmarkResults"] = fileTree(
+    layout.buildDirectory.dir("outputs/connected_android_test_additional_output")
+) {
+    include("**/*benchmarkData.json")
+}
+apply(from = rootProject.file("gradle/benchmark-baseline.gradle.kts"))
@@ -0,0 +1,79 @@
+package com.example.globally_draggable_widget.benchmark;
+
+import android.graphics.Bitmap;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.example.globally_draggable_widget.capture.EncodeBuffer;
+import com.example.globally_draggable_widget.capture.ImageEncoder;
+import com.example.globally_draggable_widget.capture.ImageEncoders;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Each encoder tier on the same full-screen bitmap, writing into a reused
+ * {@link EncodeBuffer} like the capture pipeline does.
+ */
+@RunWith(Parameterized.class)
+public class EncoderBenchmark {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> encoders() {
+        List<Object[]> params = new ArrayList<>();
+        for (ImageEncoder encoder : Arrays.asList(
+                ImageEncoders.png(),
+                ImageEncoders.webpLossless(),
+                ImageEncoders.webpLossy(ImageEncoders.DEFAULT_QUALITY),
+                ImageEncoders.jpeg(ImageEncoders.DEFAULT_QUALITY))) {
+            if (encoder == ImageEncoders.png() && !params.isEmpty()) {
+                // webpLossless() falls back to PNG before Q; don't measure it twice
+                continue;
+            }
+            // Named so results line up with the committed baseline
+            params.add(new Object[]{encoder.getName(), encoder});
+        }
+        return params;
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final ImageEncoder encoder;
+    private Bitmap bitmap;
+    private EncodeBuffer buffer;
+
+    public EncoderBenchmark(String name, ImageEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    @Before
+    public void setUp() {
+        bitmap = TestFrames.screen();
+        buffer = new EncodeBuffer(bitmap.getByteCount() / 4);
+    }
+
+    @After
+    public void tearDown() {
+        bitmap.recycle();
+    }
+
+    @Test
+    public void encode() throws IOException {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            buffer.reset();
+            encoder.encode(bitmap, buffer);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.globally_draggable_widget.benchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.media.Image;
+import android.media.ImageReader;
+import android.media.ImageWriter;
+import android.os.SystemClock;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.globally_draggable_widget.capture.BitmapPool;
+import com.example.globally_draggable_widget.capture.ImageConverter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Image to Bitmap conversion on a real gralloc-backed {@link Image}, with whatever row
+ * padding the device uses. The bitmap pool is warm, as it is after the first capture.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageConverterBenchmark {
+    private static final long FRAME_WAIT_MS = 2000;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private ImageReader reader;
+    private ImageWriter writer;
+    private Image frame;
+    private BitmapPool bitmapPool;
+    private ImageConverter converter;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        reader = ImageReader.newInstance(TestFrames.WIDTH, TestFrames.HEIGHT,
+                PixelFormat.RGBA_8888, 2);
+        writer = ImageWriter.newInstance(reader.getSurface(), 1);
+        Image input = writer.dequeueInputImage();
+        Image.Plane plane = input.getPlanes()[0];
+        Bitmap screen = TestFrames.screen();
+        TestFrames.fill(plane.getBuffer(), plane.getRowStride(), screen);
+        screen.recycle();
+        writer.queueInputImage(input);
+
+        long deadline = SystemClock.uptimeMillis() + FRAME_WAIT_MS;
+        while ((frame = reader.acquireLatestImage()) == null) {
+            if (SystemClock.uptimeMillis() > deadline) {
+                throw new IllegalStateException("No frame from ImageWriter");
+            }
+            Thread.sleep(5);
+        }
+
+        bitmapPool = new BitmapPool(BitmapPool.DEFAULT_MAX_BYTES);
+        converter = new ImageConverter(bitmapPool);
+    }
+
+    @After
+    public void tearDown() {
+        converter.release();
+        bitmapPool.clear();
+        frame.close();
+        writer.close();
+        reader.close();
+    }
+
+    @Test
+    public void convertFullFrame() {
+        measure(new Rect(0, 0, TestFrames.WIDTH, TestFrames.HEIGHT));
+    }
+
+    @Test
+    public void convertCrop() {
+        measure(new Rect(120, 600, 960, 1400));
+    }
+
+    private void measure(Rect region) {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Bitmap bitmap = converter.convert(frame, region);
+            bitmapPool.release(bitmap);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.globally_draggable_widget.benchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Synthetic screen content: flat app chrome, text-like strokes and a photo-like noisy band,
+ * so encoders see a realistic mix of compressible and incompressible pixels.
+ */
+final class TestFrames {
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 2400;
+
+    private TestFrames() {
+    }
+
+    static Bitmap screen() {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.WHITE);
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(0xFF6200EE);
+        canvas.drawRect(0, 0, WIDTH, 220, paint);
+
+        paint.setColor(Color.DKGRAY);
+        paint.setTextSize(42);
+        for (int line = 0; line < 30; line++) {
+            canvas.drawText("The quick brown fox jumps over the lazy dog " + line,
+                    48, 320 + line * 56, paint);
+        }
+
+        Random random = new Random(42);
+        int[] noise = new int[WIDTH];
+        for (int y = 2050; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                noise[x] = 0xFF000000 | random.nextInt(0x1000000);
+            }
+            bitmap.setPixels(noise, 0, WIDTH, 0, y, WIDTH, 1);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Copies {@code bitmap} into an RGBA plane with the given row stride.
+     */
+    static void fill(ByteBuffer plane, int rowStride, Bitmap bitmap) {
+        ByteBuffer packed = ByteBuffer.allocate(bitmap.getByteCount());
+        bitmap.copyPixelsToBuffer(packed);
+        int rowBytes = bitmap.getWidth() * 4;
+        byte[] row = new byte[rowBytes];
+        packed.rewind();
+        for (int y = 0; y < bitmap.getHeight(); y++) {
+            packed.get(row);
+            plane.position(y * rowStride);
+            plane.put(row);
+        }
+        plane.rewind();
+    }
+}
@@ -0,0 +1,76 @@
+// Shared regression gate for the benchmark modules. A module sets "benchmarkTask" (the task
+// that produces results) and "benchmarkResults" (the result files) before applying this.
+// Every score is a time per operation, so higher is worse.
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+
+val baselineFile = file("baselines/${project.name}.json")
+val tolerance = (findProperty("benchmark.tolerance") as String?)?.toDouble() ?: 0.15
+// A benchmark without a baseline fails the check unless this is set, e.g. while adding one
+val allowMissingBaseline = project.hasProperty("benchmark.allowMissingBaseline")
+val resultFiles = extra["benchmarkResults"] as FileCollection
+
+fun readScores(file: File): Map<String, Double> {
+    val json = JsonSlurper().parse(file)
+    if (json is List<*>) {
+        // JMH: [{benchmark, params, primaryMetric: {score}}]
+        return json.filterIsInstance<Map<*, *>>().associate { result ->
+            val params = (result["params"] as Map<*, *>?)
+                ?.entries?.joinToString(",", "[", "]") { "${it.key}=${it.value}" } ?: ""
+            val metric = result["primaryMetric"] as Map<*, *>
+            (result["benchmark"] as String) + params to (metric["score"] as Number).toDouble()
+        }
+    }
+    // androidx.benchmark: {benchmarks: [{className, name, metrics: {timeNs: {median}}}]}
+    return ((json as Map<*, *>)["benchmarks"] as List<*>).filterIsInstance<Map<*, *>>()
+        .associate { result ->
+            val time = (result["metrics"] as Map<*, *>)["timeNs"] as Map<*, *>
+            "${result["className"]}.${result["name"]}" to (time["median"] as Number).toDouble()
+        }
+}
+
+tasks.register("checkBenchmarkBaseline") {
+    group = "verification"
+    description = "Fails when a benchmark is more than ${(tolerance * 100).toInt()}% slower " +
+            "than its baseline or has none. Pass -PupdateBaseline to record the current " +
+            "results instead."
+    dependsOn(extra["benchmarkTask"])
+    doLast {
+        val scores = resultFiles.files.flatMap { readScores(it).entries }
+            .associate { it.key to it.value }.toSortedMap()
+        if (scores.isEmpty()) {
+            throw GradleException("No benchmark results in ${resultFiles.files}")
+        }
+
+        if (project.hasProperty("updateBaseline")) {
+            baselineFile.writeText(JsonOutput.prettyPrint(JsonOutput.toJson(scores)) + "\n")
+            logger.lifecycle("Recorded ${scores.size} baselines in $baselineFile")
+            return@doLast
+        }
+
+        val baseline = JsonSlurper().parse(baselineFile) as Map<*, *>
+        val missing = scores.keys.filter { baseline[it] !is Number }
+        if (missing.isNotEmpty()) {
+            val message = "No baseline in $baselineFile for:\n" + missing.joinToString("\n") +
+                    "\nRecord them with -PupdateBaseline"
+            if (!allowMissingBaseline) {
+                throw GradleException(message +
+                        ", or pass -Pbenchmark.allowMissingBaseline to skip them")
+            }
+            logger.warn(message)
+        }
+        val regressions = scores.mapNotNull { (name, score) ->
+            val expected = (baseline[name] as Number?)?.toDouble()
+            when {
+                expected == null -> null
+                score > expected * (1 + tolerance) ->
+                    String.format("%s: %.1f vs baseline %.1f (+%.0f%%)",
+                        name, score, expected, (score / expected - 1) * 100)
+                else -> null
+            }
+        }
+        if (regressions.isNotEmpty()) {
+            throw GradleException("Benchmark regressions:\n" + regressions.joinToString("\n"))
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.globally_draggable_widget.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.UiDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import kotlin.Unit;
+
+/**
+ * Records the baseline profile for :app. Run with
+ * {@code ./gradlew :app:generateBaselineProfile} on a device running API 33+ or a rooted
+ * API 28+ device; the result lands in {@code app/src/release/generated/baselineProfiles}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Before
+    public void grantPermissions() throws IOException {
+        OverlayJourneys.grantPermissions(
+                UiDevice.getInstance(InstrumentationRegistry.getInstrumentation()));
+    }
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(OverlayJourneys.TARGET_PACKAGE, scope -> {
+            scope.pressHome();
+            OverlayJourneys.startOverlay(scope);
+            OverlayJourneys.dragButton(scope.getDevice());
+            OverlayJourneys.toggleMenu(scope.getDevice());
+            OverlayJourneys.captureScreenshot(scope.getDevice());
+            return Unit.INSTANCE;
+        });
+    }
+}
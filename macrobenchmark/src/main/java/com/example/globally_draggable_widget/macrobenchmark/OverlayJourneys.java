@@ -0,0 +1,97 @@
+package com.example.globally_draggable_widget.macrobenchmark;
+
+import android.graphics.Rect;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * User journeys through the overlay shared by the benchmarks and the baseline profile
+ * generator, so the profile covers exactly what is measured.
+ */
+final class OverlayJourneys {
+    static final String TARGET_PACKAGE = "com.example.globally_draggable_widget";
+    private static final long TIMEOUT_MS = 5000;
+    private static final int DRAG_STEPS = 40;
+    // MediaProjection consent button; the label differs between releases
+    private static final Pattern CONSENT_BUTTON = Pattern.compile("(?i)start now|start|allow");
+
+    private OverlayJourneys() {
+    }
+
+    /**
+     * Grants what the launcher activity would otherwise stop and ask for.
+     */
+    static void grantPermissions(UiDevice device) throws IOException {
+        device.executeShellCommand("appops set " + TARGET_PACKAGE + " SYSTEM_ALERT_WINDOW allow");
+        device.executeShellCommand("pm grant " + TARGET_PACKAGE
+                + " android.permission.RECORD_AUDIO");
+    }
+
+    /**
+     * Cold path: launcher activity, service start and the first frame of the button.
+     */
+    static UiObject2 startOverlay(MacrobenchmarkScope scope) {
+        scope.startActivityAndWait();
+        return waitForButton(scope.getDevice());
+    }
+
+    static UiObject2 waitForButton(UiDevice device) {
+        UiObject2 button = device.wait(
+                Until.findObject(By.res(TARGET_PACKAGE, "main_button")), TIMEOUT_MS);
+        if (button == null) {
+            throw new AssertionError("Overlay button did not appear within " + TIMEOUT_MS + "ms");
+        }
+        return button;
+    }
+
+    /**
+     * Drags the button down and across the screen and lets it fling to an edge.
+     */
+    static void dragButton(UiDevice device) {
+        UiObject2 button = waitForButton(device);
+        Rect bounds = button.getVisibleBounds();
+        int endX = device.getDisplayWidth() / 2;
+        int endY = device.getDisplayHeight() / 2;
+        device.drag(bounds.centerX(), bounds.centerY(), endX, endY, DRAG_STEPS);
+        device.waitForIdle();
+    }
+
+    /**
+     * Opens and closes the menu, which inflates it on first use.
+     */
+    static void toggleMenu(UiDevice device) {
+        waitForButton(device).click();
+        device.wait(Until.hasObject(By.res(TARGET_PACKAGE, "menu_screenshot")), TIMEOUT_MS);
+        waitForButton(device).click();
+        device.waitForIdle();
+    }
+
+    /**
+     * Takes a screenshot through the menu, accepting the capture consent if it is shown,
+     * and dismisses the share sheet. Skips the capture if no consent button is found.
+     */
+    static void captureScreenshot(UiDevice device) {
+        waitForButton(device).click();
+        UiObject2 screenshot = device.wait(
+                Until.findObject(By.res(TARGET_PACKAGE, "menu_screenshot")), TIMEOUT_MS);
+        if (screenshot == null) {
+            return;
+        }
+        screenshot.click();
+        UiObject2 consent = device.wait(Until.findObject(By.text(CONSENT_BUTTON)), TIMEOUT_MS);
+        if (consent != null) {
+            consent.click();
+        }
+        // The share sheet opens once the capture is saved
+        device.waitForWindowUpdate(null, TIMEOUT_MS);
+        device.pressBack();
+        device.waitForIdle();
+    }
+}
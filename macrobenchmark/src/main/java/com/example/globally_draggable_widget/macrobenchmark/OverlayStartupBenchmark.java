@@ -0,0 +1,102 @@
+package com.example.globally_draggable_widget.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.UiDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Cold start from the launcher to the first frame of the floating button. The app marks
+ * that span with the {@code OverlayStartup} async trace section, which starts in the
+ * service's {@code onCreate}; the activity launch is reported alongside it. Each test
+ * runs with no ahead-of-time compilation and with the baseline profile, so the
+ * difference is the profile's cold-path gain.
+ */
+@RunWith(Parameterized.class)
+public class OverlayStartupBenchmark {
+    private static final String STARTUP_TRACE = "OverlayStartup";
+    private static final int ITERATIONS = 10;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> compilationModes() {
+        return Arrays.asList(
+                new Object[]{"none", new CompilationMode.None()},
+                new Object[]{"baselineProfile",
+                        new CompilationMode.Partial(BaselineProfileMode.Require)});
+    }
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private final CompilationMode compilationMode;
+
+    public OverlayStartupBenchmark(String name, CompilationMode compilationMode) {
+        this.compilationMode = compilationMode;
+    }
+
+    @Before
+    public void grantPermissions() throws IOException {
+        OverlayJourneys.grantPermissions(
+                UiDevice.getInstance(InstrumentationRegistry.getInstrumentation()));
+    }
+
+    @Test
+    public void coldStartToOverlay() {
+        benchmarkRule.measureRepeated(
+                OverlayJourneys.TARGET_PACKAGE,
+                Arrays.asList(new TraceSectionMetric(STARTUP_TRACE), new StartupTimingMetric()),
+                compilationMode,
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    OverlayJourneys.startOverlay(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+
+    /**
+     * The first drag and menu toggle after a cold start, when the touch and menu code has
+     * not been JIT compiled yet.
+     */
+    @Test
+    public void firstInteractionAfterColdStart() {
+        benchmarkRule.measureRepeated(
+                OverlayJourneys.TARGET_PACKAGE,
+                Collections.singletonList(new FrameTimingMetric()),
+                compilationMode,
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    OverlayJourneys.startOverlay(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    OverlayJourneys.dragButton(scope.getDevice());
+                    OverlayJourneys.toggleMenu(scope.getDevice());
+                    return Unit.INSTANCE;
+                });
+    }
+}
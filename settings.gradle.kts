@@ -21,4 +21,7 @@ dependencyResolutionManagement {
 
 rootProject.name = "globally_draggable_widget"
 include(":app")
+include(":benchmark-jvm")
+include(":benchmark")
+include(":macrobenchmark")
  
\ No newline at end of file